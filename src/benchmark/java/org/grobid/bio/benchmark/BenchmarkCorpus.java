@@ -0,0 +1,105 @@
+package org.grobid.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.utilities.GrobidProperties;
+
+/**
+ * Benchmark data: the sentences of the GENIA evaluation raw files bundled with the module, and
+ * the initialisation of Grobid.
+ *
+ * @author Patrice Lopez
+ */
+public class BenchmarkCorpus {
+
+    public static final String EVALUATION_PATH = "resources/dataset/bio/evaluation/NLPBA-Genia4ERtest/";
+
+    public static final String[] RAW_FILES = {"Genia4EReval1.raw", "Genia4EReval2.raw"};
+
+    private static boolean grobidInitialised = false;
+
+    /**
+     * Initialise Grobid, the grobid home being expected at the same location as for the tests.
+     */
+    public static synchronized void initGrobid() {
+        if (grobidInitialised)
+            return;
+        try {
+            String pGrobidHome = System.getProperty("grobid.home", "../grobid-home");
+            GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(pGrobidHome));
+            GrobidProperties.getInstance(grobidHomeFinder);
+        } catch (final Exception exp) {
+            throw new GrobidException("GROBID initialisation failed for the benchmarks.", exp);
+        }
+        grobidInitialised = true;
+    }
+
+    /**
+     * The sentences of the GENIA evaluation raw files (one token per line, sentences separated by
+     * an empty line), the tokens being separated by a space.
+     *
+     * @param max maximum number of sentences, -1 for all
+     */
+    public static List<String> sentences(int max) {
+        List<String> sentences = new ArrayList<String>();
+        try {
+            for (String rawFile : RAW_FILES) {
+                File file = new File(EVALUATION_PATH + rawFile);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+                try {
+                    StringBuilder sentence = new StringBuilder();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() == 0) {
+                            if (sentence.length() > 0) {
+                                sentences.add(sentence.toString());
+                                if ( (max != -1) && (sentences.size() >= max) )
+                                    return sentences;
+                            }
+                            sentence = new StringBuilder();
+                            continue;
+                        }
+                        if (line.startsWith("###MEDLINE"))
+                            continue;
+                        if (sentence.length() > 0)
+                            sentence.append(" ");
+                        sentence.append(line);
+                    }
+                    if (sentence.length() > 0)
+                        sentences.add(sentence.toString());
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new GrobidException("Cannot read the GENIA evaluation raw files.", e);
+        }
+        if ( (max != -1) && (sentences.size() > max) )
+            return sentences.subList(0, max);
+        return sentences;
+    }
+
+    /**
+     * A text made of the given number of GENIA sentences.
+     */
+    public static String text(int nbSentences) {
+        StringBuilder text = new StringBuilder();
+        for (String sentence : sentences(nbSentences)) {
+            if (text.length() > 0)
+                text.append(" ");
+            text.append(sentence);
+        }
+        return text.toString();
+    }
+
+}
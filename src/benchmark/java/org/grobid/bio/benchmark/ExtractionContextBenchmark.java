@@ -0,0 +1,97 @@
+package org.grobid.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.engines.BiotechExtractionContext;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocations of the preparation of the tagger input (tokenization and feature lines) with
+ * new buffers for each call against the buffers of the per-thread
+ * {@link BiotechExtractionContext}, and of the whole extraction. To be run with -prof gc,
+ * the gc.alloc.rate.norm metric giving the bytes allocated per call:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ExtractionContextBenchmark -prof gc
+ * </pre>
+ *
+ * @author Patrice Lopez
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionContextBenchmark {
+
+    // number of GENIA sentences of the benchmarked text
+    @Param({"1", "10", "100"})
+    public int nbSentences;
+
+    private BiotechParser parser;
+    private String text;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkCorpus.initGrobid();
+        parser = new BiotechParser();
+        text = BenchmarkCorpus.text(nbSentences);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        parser.close();
+    }
+
+    @Benchmark
+    public int featuresNewBuffers() {
+        BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text);
+        FeaturesWriterBiotechEntity writer = new FeaturesWriterBiotechEntity();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (!tokens.isSpace(i))
+                writer.addToken(tokens.text(i), "<biotech>");
+        }
+        writer.endSequence();
+        return writer.getBuffer().length();
+    }
+
+    @Benchmark
+    public int featuresContext() {
+        BiotechExtractionContext context = BiotechExtractionContext.acquire();
+        try {
+            BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text, context.getTokens(0));
+            FeaturesWriterBiotechEntity writer = context.getFeaturesWriter();
+            for (int i = 0; i < tokens.size(); i++) {
+                if (!tokens.isSpace(i))
+                    writer.addToken(tokens.text(i), "<biotech>");
+            }
+            writer.endSequence();
+            return context.getFeatures().length();
+        } finally {
+            context.release();
+        }
+    }
+
+    @Benchmark
+    public BiotechEntitySpans endToEnd() throws Exception {
+        return parser.extractBiotechEntitySpans(text);
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.grobid.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.features.FeaturesVectorBiotechEntity;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+import org.grobid.core.features.TokenFeaturesCache;
+import org.grobid.core.layout.LayoutToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Feature generation for 100 GENIA sentences: the feature vectors printed token by token
+ * against the streaming feature writer, which produces the same lines, with and without the
+ * cache of the token features. The hit rate of the cache is printed at the end of each trial.
+ *
+ * @author Patrice Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeaturesBenchmark {
+
+    private List<LayoutToken> tokenizations;
+    private FeaturesWriterBiotechEntity writer;
+    private FeaturesWriterBiotechEntity cachedWriter;
+    private TokenFeaturesCache tokenCache;
+
+    @Setup
+    public void setup() {
+        BenchmarkCorpus.initGrobid();
+        tokenizations = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(BenchmarkCorpus.text(100));
+        writer = new FeaturesWriterBiotechEntity(new StringBuilder(), null);
+        tokenCache = new TokenFeaturesCache(TokenFeaturesCache.DEFAULT_SIZE);
+        cachedWriter = new FeaturesWriterBiotechEntity(new StringBuilder(), tokenCache);
+    }
+
+    @TearDown
+    public void tearDown() {
+        CacheStats stats = tokenCache.getStats();
+        System.out.println("\nToken features cache: " + tokenCache.size() + " tokens, hit rate " 
+            + String.format("%.4f", stats.hitRate()) + " (" + stats.hitCount() + " hits, " 
+            + stats.missCount() + " misses)");
+    }
+
+    @Benchmark
+    public String featuresVector() {
+        StringBuilder features = new StringBuilder();
+        int posit = 0;
+        for (LayoutToken token : tokenizations) {
+            String tok = token.getText();
+            if (tok.equals(" "))
+                continue;
+            features.append(FeaturesVectorBiotechEntity
+                .addFeaturesBiotechEntities(tok + "\t<biotech>", tokenizations.size(), posit, false, false)
+                .printVector());
+            posit++;
+        }
+        return features.toString();
+    }
+
+    @Benchmark
+    public int featuresWriter() {
+        writer.reset();
+        for (LayoutToken token : tokenizations) {
+            String tok = token.getText();
+            if (!tok.equals(" "))
+                writer.addToken(tok, "<biotech>");
+        }
+        return writer.getBuffer().length();
+    }
+
+    @Benchmark
+    public int featuresWriterCached() {
+        cachedWriter.reset();
+        for (LayoutToken token : tokenizations) {
+            String tok = token.getText();
+            if (!tok.equals(" "))
+                cachedWriter.addToken(tok, "<biotech>");
+        }
+        return cachedWriter.getBuffer().length();
+    }
+
+}
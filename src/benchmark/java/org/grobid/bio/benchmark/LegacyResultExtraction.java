@@ -0,0 +1,127 @@
+package org.grobid.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.layout.LayoutToken;
+
+/**
+ * Former extraction of the entities from the labelled result, matching the tokens of the result
+ * with the tokenization by their text, kept as benchmark reference.
+ *
+ * @author Patrice Lopez
+ */
+public class LegacyResultExtraction {
+
+    /**
+     * Extract results from a labelled header.
+     */
+    public static List<BiotechEntity> resultExtraction(String text, 
+												String result,
+                                                List<LayoutToken> tokenizations) {
+	
+		List<BiotechEntity> entities = new ArrayList<BiotechEntity>();
+        StringTokenizer stt = new StringTokenizer(result, "\n");
+		String label = null; // label
+        String actual = null; // token
+		int offset = 0;
+		int addedOffset = 0;
+		int p = 0; // iterator for the tokenizations for restauring the original tokenization with
+        // respect to spaces
+		BiotechEntity currentEntity = null;
+		while (stt.hasMoreTokens()) {
+            String line = stt.nextToken();
+            if (line.trim().length() == 0) {
+                continue;
+            }
+			
+			StringTokenizer st2 = new StringTokenizer(line, "\t");
+            boolean start = true;
+            label = null;
+            actual = null;
+            while (st2.hasMoreTokens()) {
+                if (start) {
+                    actual = st2.nextToken().trim();
+                    start = false;
+
+                    boolean strop = false;
+                    while ((!strop) && (p < tokenizations.size())) {
+                        String tokOriginal = tokenizations.get(p).getText();
+						addedOffset += tokOriginal.length();
+						if (tokOriginal.equals(actual)) {
+                            strop = true;
+                        }
+                        p++;
+                    }
+                } else {
+                    label = st2.nextToken().trim();
+                }
+            }
+
+            if (label == null) {
+				offset += addedOffset;
+				addedOffset = 0;
+                continue;
+            }
+
+			if (actual != null) {
+				if (label.startsWith("B-")) {      
+					if (currentEntity != null) {
+						int localPos = currentEntity.getOffsetEnd();
+						if (label.length() > 1) {  
+							String subtag = label.substring(2,label.length()).toLowerCase();
+							if (currentEntity.getRawName().equals(subtag) && 
+							   ( (localPos == offset) ) ) {
+								currentEntity.setOffsetEnd(offset+addedOffset);
+								offset += addedOffset;
+								addedOffset = 0;	
+								continue;
+							}														
+							entities.add(currentEntity);
+						}
+					}
+					if (label.length() > 1) {  
+						String subtag = label.substring(2,label.length()).toLowerCase();
+						currentEntity = new BiotechEntity(subtag);   
+						//if (tokenizations.get(offset) == " ") {
+						if ( text.charAt(offset) == ' ') {	
+							currentEntity.setOffsetStart(offset+1);
+						}
+						else
+							currentEntity.setOffsetStart(offset);
+						currentEntity.setOffsetEnd(offset+addedOffset);
+					}  
+				}
+				else if (label.startsWith("I-")) {  
+					if (label.length() > 1) {  
+						String subtag = label.substring(2,label.length()).toLowerCase();
+
+					    if ( (currentEntity != null) && (currentEntity.getRawName().equals(subtag)) ) {
+							currentEntity.setOffsetEnd(offset+addedOffset);		
+						}
+						else {
+							// should not be the case, but we add the new entity, for robustness      
+							if (currentEntity != null) 
+								entities.add(currentEntity);
+							currentEntity = new BiotechEntity(subtag);   
+							currentEntity.setOffsetStart(offset);
+							currentEntity.setOffsetEnd(offset+addedOffset);
+						}
+				   	}
+				}
+				
+				offset += addedOffset;
+				addedOffset = 0;
+			}			
+		}
+		
+		if (currentEntity != null) {
+			entities.add(currentEntity);
+		}
+		
+		return entities;
+	}
+
+}
@@ -0,0 +1,159 @@
+package org.grobid.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.lexicon.BioNameMatcher;
+import org.grobid.core.lexicon.BioTokenDictionary;
+import org.grobid.core.lexicon.FastMatcher;
+import org.grobid.core.utilities.OffsetPosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Gazetteer matching and token look-ups: the Aho-Corasick {@link BioNameMatcher} against the
+ * Grobid {@link FastMatcher}, and the {@link BioTokenDictionary} against a HashSet of Strings.
+ *
+ * The vocabulary is synthetic, made of random combinations of the GENIA tokens, so that the
+ * size of the gazetteer can vary and that the benchmark does not depend on the lexicon
+ * resources installed.
+ *
+ * @author Patrice Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexiconBenchmark {
+
+    // number of terms of the synthetic gazetteer
+    @Param({"1000", "100000"})
+    public int nbTerms;
+
+    private List<LayoutToken> tokenizations;
+    private BioNameMatcher bioNameMatcher;
+    private FastMatcher fastMatcher;
+    private BioTokenDictionary dictionary;
+    private Set<String> hashSet;
+    private File vocabularyFile;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkCorpus.initGrobid();
+        String text = BenchmarkCorpus.text(200);
+        tokenizations = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+
+        List<String> words = new ArrayList<String>();
+        for (LayoutToken token : tokenizations) {
+            if (token.getText().trim().length() > 0)
+                words.add(token.getText());
+        }
+
+        // terms of 1 to 4 tokens, half of them taken from the text to have matches
+        Random random = new Random(42);
+        Set<String> terms = new LinkedHashSet<String>();
+        while (terms.size() < nbTerms) {
+            int length = 1 + random.nextInt(4);
+            StringBuilder term = new StringBuilder();
+            if (random.nextBoolean()) {
+                int start = random.nextInt(words.size() - length);
+                for (int i = 0; i < length; i++) {
+                    if (i > 0)
+                        term.append(" ");
+                    term.append(words.get(start + i));
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    if (i > 0)
+                        term.append(" ");
+                    term.append(words.get(random.nextInt(words.size()))).append(random.nextInt(1000));
+                }
+            }
+            terms.add(term.toString());
+        }
+
+        vocabularyFile = File.createTempFile("bio-vocabulary", ".txt");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(vocabularyFile), "UTF-8"));
+        try {
+            for (String term : terms) {
+                writer.write(term);
+                writer.write("\n");
+            }
+        } finally {
+            writer.close();
+        }
+        fastMatcher = new FastMatcher(vocabularyFile);
+        bioNameMatcher = BioNameMatcher.build(terms);
+
+        Set<String> tokens = new LinkedHashSet<String>();
+        for (String term : terms) {
+            for (String token : term.split(" ")) {
+                tokens.add(token.toLowerCase());
+            }
+        }
+        dictionary = new BioTokenDictionary(new ArrayList<String>(tokens));
+        hashSet = new HashSet<String>(tokens);
+    }
+
+    @TearDown
+    public void tearDown() {
+        vocabularyFile.delete();
+    }
+
+    @Benchmark
+    public List<OffsetPosition> matchBioNameMatcher() {
+        return bioNameMatcher.matchLayoutToken(tokenizations);
+    }
+
+    @Benchmark
+    public List<OffsetPosition> matchFastMatcher() {
+        return fastMatcher.matchLayoutToken(tokenizations);
+    }
+
+    @Benchmark
+    public int lookupBioTokenDictionary() {
+        int found = 0;
+        for (LayoutToken token : tokenizations) {
+            String text = token.getText();
+            if (dictionary.indexOfIgnoreCase(text, 0, text.length()) != -1)
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int lookupHashSet() {
+        int found = 0;
+        for (LayoutToken token : tokenizations) {
+            if (hashSet.contains(token.getText().toLowerCase()))
+                found++;
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.grobid.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of each stage of the biotech entity extraction on GENIA sentences: tokenization, feature
+ * generation, tagging and result extraction, and of the whole extraction.
+ *
+ * @author Patrice Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineStagesBenchmark {
+
+    // number of GENIA sentences of the benchmarked text
+    @Param({"1", "10", "100"})
+    public int nbSentences;
+
+    private BiotechParser parser;
+    private String text;
+    private List<String> sentences;
+    private BioTokenizer.Tokens tokens;
+    private String features;
+    private String labelled;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkCorpus.initGrobid();
+        parser = new BiotechParser();
+        sentences = BenchmarkCorpus.sentences(nbSentences);
+        text = BenchmarkCorpus.text(nbSentences);
+        tokens = BioTokenizer.tokenize(text);
+        features = features(tokens);
+        labelled = parser.label(features);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        parser.close();
+    }
+
+    private static String features(BioTokenizer.Tokens tokens) {
+        FeaturesWriterBiotechEntity writer = new FeaturesWriterBiotechEntity();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (!tokens.isSpace(i))
+                writer.addToken(tokens.text(i), "<biotech>");
+        }
+        writer.endSequence();
+        return writer.getBuffer().toString();
+    }
+
+    @Benchmark
+    public BioTokenizer.Tokens tokenization() {
+        return BioTokenizer.tokenize(text);
+    }
+
+    @Benchmark
+    public String featureGeneration() {
+        return features(tokens);
+    }
+
+    @Benchmark
+    public String label() {
+        return parser.label(features);
+    }
+
+    @Benchmark
+    public List<BiotechEntity> resultExtraction() {
+        return BiotechParser.resultExtraction(labelled, 0, labelled.length(), tokens);
+    }
+
+    @Benchmark
+    public List<BiotechEntity> endToEnd() throws Exception {
+        return parser.extractBiotechEntities(text);
+    }
+
+    @Benchmark
+    public List<List<BiotechEntity>> endToEndBatch() throws Exception {
+        return parser.extractBiotechEntities(sentences);
+    }
+
+}
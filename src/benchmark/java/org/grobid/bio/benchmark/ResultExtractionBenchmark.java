@@ -0,0 +1,115 @@
+package org.grobid.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+import org.grobid.core.layout.LayoutToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extraction of the entities from a labelled result: the single-pass decoder of the parser
+ * against the former extraction matching the tokens by their text, and the decoder writing
+ * into reused {@link BiotechEntitySpans} rather than entity objects (to be run with -prof gc
+ * for the allocation rates).
+ *
+ * The labelled result is synthetic, with the feature columns of the GENIA tokens and random
+ * labels, so that it does not depend on the model.
+ *
+ * @author Patrice Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultExtractionBenchmark {
+
+    private static final String[] LABELS = {"O", "O", "O", "O", "B-<protein>", "I-<protein>",
+        "B-<DNA>", "I-<DNA>", "B-<RNA>", "B-<cell_line>", "I-<cell_line>", "B-<cell_type>", "I-<cell_type>"};
+
+    // number of labelled tokens
+    @Param({"1000", "100000"})
+    public int nbTokens;
+
+    private String text;
+    private String labelled;
+    private List<LayoutToken> tokenizations;
+    private BioTokenizer.Tokens bioTokens;
+    private final BiotechEntitySpans spans = new BiotechEntitySpans();
+
+    @Setup
+    public void setup() {
+        BenchmarkCorpus.initGrobid();
+        List<String> sentences = BenchmarkCorpus.sentences(-1);
+        StringBuilder document = new StringBuilder();
+        List<LayoutToken> tokens = new ArrayList<LayoutToken>();
+        int count = 0;
+        int s = 0;
+        while (count < nbTokens) {
+            String sentence = sentences.get(s % sentences.size());
+            if (document.length() > 0)
+                document.append(" ");
+            document.append(sentence);
+            for (LayoutToken token : GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(sentence)) {
+                if (!token.getText().equals(" "))
+                    count++;
+            }
+            s++;
+        }
+        text = document.toString();
+        tokenizations = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+
+        // tagger output: the feature columns separated by tabulations, then the label
+        Random random = new Random(42);
+        FeaturesWriterBiotechEntity writer = new FeaturesWriterBiotechEntity();
+        StringBuilder result = new StringBuilder();
+        for (LayoutToken token : tokenizations) {
+            String tok = token.getText();
+            if (tok.equals(" "))
+                continue;
+            writer.reset();
+            writer.addToken(tok, "<biotech>");
+            String line = writer.getBuffer().toString().trim().replace(' ', '\t');
+            result.append(line).append("\t").append(LABELS[random.nextInt(LABELS.length)]).append("\n");
+        }
+        labelled = result.toString();
+        bioTokens = BioTokenizer.Tokens.fromLayoutTokens(tokenizations);
+    }
+
+    @Benchmark
+    public List<BiotechEntity> decoder() {
+        return BiotechParser.resultExtraction(labelled, 0, labelled.length(), bioTokens);
+    }
+
+    @Benchmark
+    public BiotechEntitySpans decoderSpans() {
+        spans.clear();
+        BiotechParser.resultExtraction(labelled, 0, labelled.length(), bioTokens, spans);
+        return spans;
+    }
+
+    @Benchmark
+    public List<BiotechEntity> legacy() {
+        return LegacyResultExtraction.resultExtraction(text, labelled, tokenizations);
+    }
+
+}
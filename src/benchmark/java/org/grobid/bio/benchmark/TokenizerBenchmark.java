@@ -0,0 +1,80 @@
+package org.grobid.benchmark;
+
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.TextUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenization of GENIA sentences: the offset-based {@link BioTokenizer}, with a new and with
+ * a reused token buffer, against the layout tokens of the {@link GrobidAnalyzer} formerly used
+ * by the parser and the StringTokenizer formerly used for the training data.
+ *
+ * To be run with -prof gc to compare the allocations.
+ *
+ * @author Patrice Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+    // number of GENIA sentences of the benchmarked text
+    @Param({"1", "100"})
+    public int nbSentences;
+
+    private String text;
+    private BioTokenizer.Tokens tokens;
+
+    @Setup
+    public void setup() {
+        BenchmarkCorpus.initGrobid();
+        text = BenchmarkCorpus.text(nbSentences);
+        tokens = new BioTokenizer.Tokens();
+    }
+
+    @Benchmark
+    public BioTokenizer.Tokens bioTokenizer() {
+        return BioTokenizer.tokenize(text);
+    }
+
+    @Benchmark
+    public BioTokenizer.Tokens bioTokenizerReused() {
+        return BioTokenizer.tokenize(text, tokens);
+    }
+
+    @Benchmark
+    public List<LayoutToken> grobidAnalyzer() {
+        return GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+    }
+
+    @Benchmark
+    public int stringTokenizer() {
+        int count = 0;
+        StringTokenizer st = new StringTokenizer(text, TextUtilities.fullPunctuations, true);
+        while (st.hasMoreTokens()) {
+            if (st.nextToken().trim().length() > 0)
+                count++;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.grobid.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.trainer.BiotechEntityTrainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generation of the training data features from the GENIA evaluation iob2 file, with an
+ * increasing number of threads, to measure the speedup of the parallel feature generation.
+ *
+ * @author Patrice Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrainingDataBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int nbThreads;
+
+    private BiotechEntityTrainer trainer;
+    private File corpusDir;
+    private File output;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkCorpus.initGrobid();
+        trainer = new BiotechEntityTrainer();
+        trainer.setNbThreads(nbThreads);
+        corpusDir = new File("resources/dataset/bio/evaluation");
+        output = File.createTempFile("biotech-training", ".crfpp");
+    }
+
+    @TearDown
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    public long createTrainingData() {
+        trainer.createCRFPPData(corpusDir, output);
+        return output.length();
+    }
+
+}
@@ -0,0 +1,223 @@
+package org.grobid.core.analyzers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.TextUtilities;
+
+/**
+ * Tokenizer shared by the biotech parser, the trainer and the biomedicine lexicon, so that
+ * the runtime features, the training data and the gazetteer terms are tokenized the same way.
+ *
+ * As with the usual Grobid tokenization, each punctuation of
+ * {@link TextUtilities#fullPunctuations} and each white space is a token, and the sequences of
+ * other characters are tokens. The tokens are given as offsets in the text, without creating
+ * strings, and the white space tokens (space, tabulation, end of line, form feed and non
+ * breaking space) are marked as such.
+ *
+ * @author Patrice Lopez
+ */
+public final class BioTokenizer {
+
+    public static final String DELIMITERS = TextUtilities.fullPunctuations + "\n\r\t\f";
+
+    private static final String SPACES = " \n\r\t\f";
+
+    // delimiter flag for the characters up to the highest delimiter
+    private static final boolean[] DELIMITER_TABLE;
+    static {
+        char max = 0;
+        for (int i = 0; i < DELIMITERS.length(); i++) {
+            max = (char) Math.max(max, DELIMITERS.charAt(i));
+        }
+        DELIMITER_TABLE = new boolean[max + 1];
+        for (int i = 0; i < DELIMITERS.length(); i++) {
+            DELIMITER_TABLE[DELIMITERS.charAt(i)] = true;
+        }
+    }
+
+    private BioTokenizer() {
+    }
+
+    public static boolean isDelimiter(char c) {
+        return (c < DELIMITER_TABLE.length) && DELIMITER_TABLE[c];
+    }
+
+    public static boolean isSpace(char c) {
+        return (c <= ' ') ? SPACES.indexOf(c) != -1 : (c == '\u00A0');
+    }
+
+    /**
+     * Tokens of a text, as offsets. An instance can be reused for several texts to avoid
+     * allocations, it is then not thread-safe.
+     */
+    public static final class Tokens {
+        private CharSequence text = "";
+        private int[] starts;
+        private int[] ends;
+        private boolean[] spaces;
+        private int size = 0;
+
+        public Tokens() {
+            this(64);
+        }
+
+        public Tokens(int capacity) {
+            capacity = Math.max(capacity, 1);
+            starts = new int[capacity];
+            ends = new int[capacity];
+            spaces = new boolean[capacity];
+        }
+
+        void clear(CharSequence text) {
+            this.text = text;
+            size = 0;
+        }
+
+        /**
+         * Remove the tokens and the reference to the tokenized text, keeping the arrays for
+         * the next text.
+         */
+        public void reset() {
+            clear("");
+        }
+
+        /**
+         * Number of tokens which can be held without growing the arrays.
+         */
+        public int capacity() {
+            return starts.length;
+        }
+
+        void add(int start, int end, boolean space) {
+            if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                spaces = Arrays.copyOf(spaces, capacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            spaces[size] = space;
+            size++;
+        }
+
+        /**
+         * The tokenized text.
+         */
+        public CharSequence getText() {
+            return text;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Offset of the first character of the token i in the text.
+         */
+        public int start(int i) {
+            return starts[i];
+        }
+
+        /**
+         * Offset after the last character of the token i in the text.
+         */
+        public int end(int i) {
+            return ends[i];
+        }
+
+        /**
+         * True if the token i is a white space.
+         */
+        public boolean isSpace(int i) {
+            return spaces[i];
+        }
+
+        /**
+         * The token i as a new string.
+         */
+        public String text(int i) {
+            return text.subSequence(starts[i], ends[i]).toString();
+        }
+
+        /**
+         * The tokens as layout tokens with their offset, for the code working on layout tokens.
+         */
+        public List<LayoutToken> toLayoutTokens() {
+            List<LayoutToken> tokens = new ArrayList<LayoutToken>(size);
+            for (int i = 0; i < size; i++) {
+                LayoutToken token = new LayoutToken(text(i));
+                token.setOffset(starts[i]);
+                tokens.add(token);
+            }
+            return tokens;
+        }
+
+        /**
+         * The tokens of a sequence of layout tokens covering a text from its beginning, the
+         * offsets being the cumulated lengths of the tokens and only the " " tokens being
+         * white spaces.
+         */
+        public static Tokens fromLayoutTokens(List<LayoutToken> layoutTokens) {
+            Tokens tokens = new Tokens(layoutTokens.size());
+            StringBuilder text = new StringBuilder();
+            for (LayoutToken layoutToken : layoutTokens) {
+                String token = layoutToken.getText();
+                int start = text.length();
+                text.append(token);
+                tokens.add(start, text.length(), token.equals(" "));
+            }
+            tokens.text = text;
+            return tokens;
+        }
+    }
+
+    /**
+     * Tokenize a text.
+     */
+    public static Tokens tokenize(CharSequence text) {
+        return tokenize(text, new Tokens(Math.max(16, text.length() / 3)));
+    }
+
+    /**
+     * Tokenize a text, reusing the given tokens instance.
+     *
+     * @return the given tokens instance
+     */
+    public static Tokens tokenize(CharSequence text, Tokens tokens) {
+        tokens.clear(text);
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isDelimiter(c)) {
+                tokens.add(i, i + 1, isSpace(c));
+                i++;
+            } else {
+                int start = i;
+                i++;
+                while ( (i < length) && !isDelimiter(text.charAt(i)) )
+                    i++;
+                tokens.add(start, i, false);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * The tokens of a text which are not white spaces, as strings.
+     */
+    public static List<String> tokenizeToStrings(CharSequence text) {
+        Tokens tokens = tokenize(text);
+        List<String> result = new ArrayList<String>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            if (!tokens.isSpace(i))
+                result.add(tokens.text(i));
+        }
+        return result;
+    }
+
+}
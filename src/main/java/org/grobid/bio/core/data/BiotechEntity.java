@@ -1,28 +1,25 @@
 package org.grobid.core.data;
 
-import org.grobid.core.utilities.OffsetPosition;
-
 /**
  * Class for managing biotech entities.
  *
+ * The entities of a whole text can also be represented without an object per entity by
+ * {@link BiotechEntitySpans}.
+ *
  * @author Patrice Lopez
  */
 public class BiotechEntity {
     // attribute
     String rawName = null;
-	int conceptReference = -1;
-	
-	String originalScheme = null;
-	String originalConcept = null;
 
-    OffsetPosition offsets = null;
+    // offsets of the entity in the text, end exclusive
+    int offsetStart = -1;
+    int offsetEnd = -1;
 
     public BiotechEntity() {
-        offsets = new OffsetPosition();
     }
 
     public BiotechEntity(String raw) {
-        offsets = new OffsetPosition();
         this.rawName = raw;
     }
 
@@ -33,27 +30,27 @@ public class BiotechEntity {
 	public void setRawName(String raw) {
         this.rawName = raw;
     }
-	
+
 	public void setOffsetStart(int start) {
-        offsets.start = start;
+        offsetStart = start;
     }
 
     public int getOffsetStart() {
-        return offsets.start;
+        return offsetStart;
     }
 
     public void setOffsetEnd(int end) {
-        offsets.end = end;
+        offsetEnd = end;
     }
 
     public int getOffsetEnd() {
-        return offsets.end;
+        return offsetEnd;
     }
 
 	public String toString() {
-        StringBuffer buffer = new StringBuffer();
-        buffer.append(rawName + "\t" + offsets.toString());
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(rawName).append('\t').append(offsetStart).append('\t').append(offsetEnd);
         return buffer.toString();
     }
 
-}
\ No newline at end of file
+}
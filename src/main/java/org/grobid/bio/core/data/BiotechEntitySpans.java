@@ -0,0 +1,296 @@
+package org.grobid.core.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact container of the biotech entities of a text: the offsets of the entities are kept
+ * in primitive arrays and their type as a byte code, without an object per entity.
+ *
+ * The entities are read by index or with a {@link Cursor}, a reusable view moving over the
+ * entities. The types of the model have fixed codes, other types get codes specific to the
+ * container. A container is not thread-safe.
+ *
+ * @author Patrice Lopez
+ */
+public final class BiotechEntitySpans {
+
+    public static final byte PROTEIN = 0;
+    public static final byte DNA = 1;
+    public static final byte RNA = 2;
+    public static final byte CELL_LINE = 3;
+    public static final byte CELL_TYPE = 4;
+
+    // raw names of the types of the model, indexed by their code
+    private static final String[] TYPES = {"<protein>", "<dna>", "<rna>", "<cell_line>", "<cell_type>"};
+    private static final String[] TYPE_LABELS = {"protein", "dna", "rna", "cell_line", "cell_type"};
+
+    private int[] starts;
+    private int[] ends;
+    private byte[] types;
+    private int size = 0;
+
+    // raw names of the types not in the model, the code of extraTypes[i] being TYPES.length + i
+    private List<String> extraTypes = null;
+
+    public BiotechEntitySpans() {
+        this(8);
+    }
+
+    public BiotechEntitySpans(int capacity) {
+        capacity = Math.max(capacity, 1);
+        starts = new int[capacity];
+        ends = new int[capacity];
+        types = new byte[capacity];
+    }
+
+    /**
+     * Code of a type of the model given by its raw name (e.g. "&lt;protein&gt;"), -1 if the
+     * type is not a type of the model.
+     */
+    public static byte modelTypeCode(String rawName) {
+        for (byte i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(rawName))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Code of a type in this container given by its raw name, a new code being created for a
+     * type not in the model.
+     */
+    public byte typeCode(String rawName) {
+        byte code = modelTypeCode(rawName);
+        if (code != -1)
+            return code;
+        if (extraTypes == null)
+            extraTypes = new ArrayList<String>();
+        int index = extraTypes.indexOf(rawName);
+        if (index == -1) {
+            if (TYPES.length + extraTypes.size() > Byte.MAX_VALUE)
+                throw new IllegalStateException("Too many entity types.");
+            extraTypes.add(rawName);
+            index = extraTypes.size() - 1;
+        }
+        return (byte) (TYPES.length + index);
+    }
+
+    /**
+     * Raw name of a type code of this container.
+     */
+    public String typeName(byte code) {
+        if (code < TYPES.length)
+            return TYPES[code];
+        return extraTypes.get(code - TYPES.length);
+    }
+
+    /**
+     * Name of a type code of this container without the brackets of the raw name,
+     * e.g. "protein".
+     */
+    public String typeLabel(byte code) {
+        if (code < TYPES.length)
+            return TYPE_LABELS[code];
+        String type = typeName(code);
+        if (type.startsWith("<") && type.endsWith(">"))
+            type = type.substring(1, type.length() - 1);
+        return type;
+    }
+
+    /**
+     * Add an entity.
+     *
+     * @param type  code of the type of the entity
+     * @param start offset of the first character of the entity
+     * @param end   offset after the last character of the entity
+     */
+    public void add(byte type, int start, int end) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        types[size] = type;
+        size++;
+    }
+
+    /**
+     * Change the end of the last entity.
+     */
+    public void setLastEnd(int end) {
+        ends[size - 1] = end;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int start(int i) {
+        return starts[i];
+    }
+
+    public int end(int i) {
+        return ends[i];
+    }
+
+    public byte type(int i) {
+        return types[i];
+    }
+
+    /**
+     * Raw name of the type of the entity i.
+     */
+    public String rawName(int i) {
+        return typeName(types[i]);
+    }
+
+    /**
+     * Remove all the entities, keeping the arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add the given offset to all the entities.
+     */
+    public void shift(int offset) {
+        if (offset == 0)
+            return;
+        for (int i = 0; i < size; i++) {
+            starts[i] += offset;
+            ends[i] += offset;
+        }
+    }
+
+    /**
+     * A copy of the entities with arrays of the exact size and the given offset added.
+     */
+    public BiotechEntitySpans copy(int offset) {
+        BiotechEntitySpans copy = new BiotechEntitySpans(size);
+        for (int i = 0; i < size; i++) {
+            copy.starts[i] = starts[i] + offset;
+            copy.ends[i] = ends[i] + offset;
+        }
+        System.arraycopy(types, 0, copy.types, 0, size);
+        copy.size = size;
+        if (extraTypes != null)
+            copy.extraTypes = new ArrayList<String>(extraTypes);
+        return copy;
+    }
+
+    /**
+     * Approximate memory used by the container in bytes.
+     */
+    public int memoryFootprint() {
+        return 48 + 3 * 16 + 9 * starts.length;
+    }
+
+    /**
+     * The entities as {@link BiotechEntity} objects.
+     */
+    public List<BiotechEntity> toEntities() {
+        return toEntities(0);
+    }
+
+    /**
+     * The entities as {@link BiotechEntity} objects, with the given offset added.
+     */
+    public List<BiotechEntity> toEntities(int offset) {
+        List<BiotechEntity> entities = new ArrayList<BiotechEntity>(size);
+        for (int i = 0; i < size; i++) {
+            BiotechEntity entity = new BiotechEntity(rawName(i));
+            entity.setOffsetStart(starts[i] + offset);
+            entity.setOffsetEnd(ends[i] + offset);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    /**
+     * The spans of a list of entities, null for a null list.
+     */
+    public static BiotechEntitySpans fromEntities(List<BiotechEntity> entities) {
+        if (entities == null)
+            return null;
+        BiotechEntitySpans spans = new BiotechEntitySpans(entities.size());
+        for (BiotechEntity entity : entities) {
+            spans.add(spans.typeCode(entity.getRawName()), entity.getOffsetStart(), entity.getOffsetEnd());
+        }
+        return spans;
+    }
+
+    /**
+     * A cursor over the entities, positioned before the first one.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reusable view over the entities of the container, without an object per entity.
+     */
+    public final class Cursor {
+        private int index = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Move to the next entity.
+         *
+         * @return false if there is no more entity
+         */
+        public boolean next() {
+            if (index + 1 >= size)
+                return false;
+            index++;
+            return true;
+        }
+
+        /**
+         * Move back before the first entity.
+         */
+        public void reset() {
+            index = -1;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public int start() {
+            return starts[index];
+        }
+
+        public int end() {
+            return ends[index];
+        }
+
+        public byte type() {
+            return types[index];
+        }
+
+        public String rawName() {
+            return typeName(types[index]);
+        }
+    }
+
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            buffer.append(rawName(i)).append('\t').append(starts[i]).append('\t').append(ends[i]).append('\n');
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.grobid.core.engines;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+
+/**
+ * Working buffers of the biotech extraction calls of a thread: the token offsets of the texts,
+ * the feature buffer and its writer and the flags of the texts of a batch.
+ *
+ * A context is kept per thread and recycled across the extraction calls, so that a warmed
+ * thread only allocates the strings exchanged with the tagger and the results. The buffers
+ * grow with the texts and the ones which grew beyond the limit given by the system property
+ * {@link #MAX_RETAINED_TOKENS_PROPERTY} (number of tokens) are dropped at the end of a call,
+ * so that a very long text does not keep its buffers alive for the lifetime of the thread.
+ *
+ * A context is acquired with {@link #acquire()} for the duration of a call and must be given
+ * back with {@link #release()}. A nested call on the same thread gets a new context.
+ *
+ * @author Patrice Lopez
+ */
+public final class BiotechExtractionContext {
+
+    public static final String MAX_RETAINED_TOKENS_PROPERTY = "grobid.bio.context.maxTokens";
+
+    public static final int DEFAULT_MAX_RETAINED_TOKENS = 1 << 16;
+
+    // approximate maximum length of the feature line of a token, for the feature buffer limit
+    private static final int CHARS_PER_TOKEN = 128;
+
+    // maximum number of token instances kept for the texts of a batch
+    private static final int MAX_RETAINED_TEXTS = 256;
+
+    private static final int maxRetainedTokens =
+        Integer.getInteger(MAX_RETAINED_TOKENS_PROPERTY, DEFAULT_MAX_RETAINED_TOKENS);
+
+    private static final ThreadLocal<BiotechExtractionContext> contexts = new ThreadLocal<BiotechExtractionContext>() {
+        @Override
+        protected BiotechExtractionContext initialValue() {
+            return new BiotechExtractionContext(maxRetainedTokens);
+        }
+    };
+
+    private final int maxTokens;
+    private boolean inUse = false;
+
+    private StringBuilder features;
+    private FeaturesWriterBiotechEntity featuresWriter;
+
+    // token offsets of each text of a call
+    private final List<BioTokenizer.Tokens> tokens = new ArrayList<BioTokenizer.Tokens>();
+
+    private boolean[] tokenized = new boolean[16];
+    private boolean[] labelled = new boolean[16];
+
+    /**
+     * @param maxTokens number of tokens above which the grown buffers are dropped at the end
+     *                  of a call
+     */
+    BiotechExtractionContext(int maxTokens) {
+        this.maxTokens = maxTokens;
+        newFeatures();
+    }
+
+    private void newFeatures() {
+        features = new StringBuilder(1024);
+        featuresWriter = new FeaturesWriterBiotechEntity(features);
+    }
+
+    /**
+     * The context of the current thread, or a new context if the context of the thread is
+     * already in use, with an empty feature buffer.
+     */
+    public static BiotechExtractionContext acquire() {
+        BiotechExtractionContext context = contexts.get();
+        if (context.inUse)
+            context = new BiotechExtractionContext(maxRetainedTokens);
+        context.inUse = true;
+        context.features.setLength(0);
+        return context;
+    }
+
+    /**
+     * End of the call using the context: the references to the texts are cleared and the
+     * buffers larger than the limit are dropped.
+     */
+    public void release() {
+        if (features.capacity() > maxTokens * CHARS_PER_TOKEN)
+            newFeatures();
+        else
+            features.setLength(0);
+        if (tokens.size() > MAX_RETAINED_TEXTS)
+            tokens.subList(MAX_RETAINED_TEXTS, tokens.size()).clear();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i).capacity() > maxTokens)
+                tokens.set(i, new BioTokenizer.Tokens());
+            else
+                tokens.get(i).reset();
+        }
+        if (tokenized.length > MAX_RETAINED_TEXTS) {
+            tokenized = new boolean[16];
+            labelled = new boolean[16];
+        }
+        inUse = false;
+    }
+
+    /**
+     * The buffer of the feature lines of the call.
+     */
+    public StringBuilder getFeatures() {
+        return features;
+    }
+
+    /**
+     * The writer appending the feature lines to {@link #getFeatures()}.
+     */
+    public FeaturesWriterBiotechEntity getFeaturesWriter() {
+        return featuresWriter;
+    }
+
+    /**
+     * The token instance for the text i of the call.
+     */
+    public BioTokenizer.Tokens getTokens(int i) {
+        while (tokens.size() <= i)
+            tokens.add(new BioTokenizer.Tokens());
+        return tokens.get(i);
+    }
+
+    /**
+     * Flags of the texts of a batch with at least one token, cleared, of at least n elements.
+     */
+    public boolean[] getTokenizedFlags(int n) {
+        tokenized = cleared(tokenized, n);
+        return tokenized;
+    }
+
+    /**
+     * Flags of the texts of a batch sent to the tagger, cleared, of at least n elements.
+     */
+    public boolean[] getLabelledFlags(int n) {
+        labelled = cleared(labelled, n);
+        return labelled;
+    }
+
+    private static boolean[] cleared(boolean[] flags, int n) {
+        if (flags.length < n)
+            return new boolean[Math.max(n, 2 * flags.length)];
+        Arrays.fill(flags, 0, n, false);
+        return flags;
+    }
+
+}
@@ -0,0 +1,320 @@
+package org.grobid.core.engines;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.metrics.BiotechMetrics;
+import org.grobid.core.metrics.NoOpBiotechMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parallel extraction of biotech entities over a stream of documents.
+ *
+ * Each document is processed (tokenization, feature generation, tagging and result extraction)
+ * by one of a fixed number of worker threads. Every worker has its own {@link BiotechParser},
+ * labelling with a tagger borrowed from a {@link BiotechTaggerPool} with one instance per
+ * worker, so that the number of concurrent labellings is bounded. The model is loaded once
+ * before the workers start.
+ *
+ * The number of documents submitted and not yet delivered is bounded, so that reading the
+ * input blocks when the workers are behind (backpressure). Results are delivered in the order
+ * of the input documents and are identical to the sequential ones.
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechExtractionService implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechExtractionService.class);
+
+    /**
+     * Receives the extraction results, in the order of the input documents.
+     */
+    public interface ResultHandler {
+        void onResult(int index, String document, List<BiotechEntity> entities) throws Exception;
+    }
+
+    /**
+     * Receives the extraction results as spans, in the order of the input documents.
+     */
+    public interface SpansHandler {
+        void onResult(int index, String document, BiotechEntitySpans spans) throws Exception;
+    }
+
+    /**
+     * Receives the documents whose extraction failed, in the order of the input documents
+     * with the results, instead of the failure ending the extraction.
+     */
+    public interface ErrorHandler {
+        void onError(int index, String document, Exception error) throws Exception;
+    }
+
+    /**
+     * Extraction of a document by the parser of a worker, and delivery of its result.
+     */
+    private interface Extraction<T> {
+        T extract(BiotechParser parser, String document) throws Exception;
+
+        void deliver(int index, String document, T result) throws Exception;
+    }
+
+    private final int nbWorkers;
+    private final int maxPending;
+    private final ExecutorService executor;
+    // result cache shared by the workers, or null
+    private final BiotechResultCache resultCache;
+
+    // taggers used by the workers, closed with the service if created by the service
+    private final BiotechTaggerPool taggerPool;
+    private final boolean ownTaggerPool;
+
+    // metrics of the parsers of the workers
+    private volatile BiotechMetrics metrics = NoOpBiotechMetrics.INSTANCE;
+
+    // one parser per worker thread
+    private final ThreadLocal<BiotechParser> parsers = new ThreadLocal<BiotechParser>() {
+        @Override
+        protected BiotechParser initialValue() {
+            BiotechParser parser = new BiotechParser(taggerPool);
+            parser.setResultCache(resultCache);
+            parser.setMetrics(metrics);
+            return parser;
+        }
+    };
+
+    /**
+     * @param nbWorkers number of worker threads
+     */
+    public BiotechExtractionService(int nbWorkers) {
+        this(nbWorkers, 4 * nbWorkers);
+    }
+
+    /**
+     * @param nbWorkers  number of worker threads
+     * @param maxPending maximum number of documents being processed or waiting for delivery
+     */
+    public BiotechExtractionService(int nbWorkers, int maxPending) {
+        this(nbWorkers, maxPending, null);
+    }
+
+    /**
+     * @param nbWorkers   number of worker threads
+     * @param maxPending  maximum number of documents being processed or waiting for delivery
+     * @param resultCache cache of the results shared by the workers, null for no cache
+     */
+    public BiotechExtractionService(int nbWorkers, int maxPending, BiotechResultCache resultCache) {
+        this(nbWorkers, maxPending, resultCache, null);
+    }
+
+    /**
+     * @param nbWorkers   number of worker threads
+     * @param maxPending  maximum number of documents being processed or waiting for delivery
+     * @param resultCache cache of the results shared by the workers, null for no cache
+     * @param taggerPool  pool of taggers shared with other users, which is not closed with the 
+     *                    service, or null for a pool with one tagger per worker 
+     */
+    public BiotechExtractionService(int nbWorkers, int maxPending, BiotechResultCache resultCache, 
+                                    BiotechTaggerPool taggerPool) {
+        if (nbWorkers < 1)
+            throw new IllegalArgumentException("The number of workers must be at least 1: " + nbWorkers);
+        if (maxPending < nbWorkers)
+            throw new IllegalArgumentException("The maximum number of pending documents must be at least " +
+                "the number of workers: " + maxPending);
+        this.nbWorkers = nbWorkers;
+        this.maxPending = maxPending;
+        this.resultCache = resultCache;
+
+        // the models are loaded once here and not lazily by concurrent workers
+        this.ownTaggerPool = (taggerPool == null);
+        this.taggerPool = ownTaggerPool ? new BiotechTaggerPool(nbWorkers) : taggerPool;
+        this.taggerPool.warmUp(nbWorkers);
+
+        executor = Executors.newFixedThreadPool(nbWorkers, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "biotech-extraction-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public int getNbWorkers() {
+        return nbWorkers;
+    }
+
+    /**
+     * Extract the entities of a list of documents, the result at index i corresponding
+     * to the document at index i.
+     */
+    public List<List<BiotechEntity>> extract(List<String> documents) {
+        final List<List<BiotechEntity>> results = new ArrayList<List<BiotechEntity>>(documents.size());
+        extract(documents.iterator(), new ResultHandler() {
+            public void onResult(int index, String document, List<BiotechEntity> entities) {
+                results.add(entities);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Extract the entities of a stream of documents. The documents are consumed from the
+     * iterator only when a slot is available, and the handler is called from the calling
+     * thread in the order of the documents.
+     */
+    public void extract(Iterator<String> documents, ResultHandler handler) {
+        extract(documents, handler, null);
+    }
+
+    /**
+     * Extract the entities of a stream of documents as by {@link #extract(Iterator, ResultHandler)},
+     * the documents whose extraction failed being given to the error handler. A null error handler
+     * ends the extraction with a {@link GrobidException} at the first failure.
+     */
+    public void extract(Iterator<String> documents, final ResultHandler handler, ErrorHandler errorHandler) {
+        extract(documents, new Extraction<List<BiotechEntity>>() {
+            public List<BiotechEntity> extract(BiotechParser parser, String document) throws Exception {
+                return parser.extractBiotechEntities(document);
+            }
+
+            public void deliver(int index, String document, List<BiotechEntity> entities) throws Exception {
+                handler.onResult(index, document, entities);
+            }
+        }, errorHandler);
+    }
+
+    /**
+     * Extract the entities of a stream of documents as spans, without an object per entity,
+     * as by {@link #extract(Iterator, ResultHandler)}.
+     */
+    public void extractSpans(Iterator<String> documents, SpansHandler handler) {
+        extractSpans(documents, handler, null);
+    }
+
+    /**
+     * Extract the entities of a stream of documents as spans, the documents whose extraction
+     * failed being given to the error handler, as by {@link #extract(Iterator, ResultHandler, ErrorHandler)}.
+     */
+    public void extractSpans(Iterator<String> documents, final SpansHandler handler, ErrorHandler errorHandler) {
+        extract(documents, new Extraction<BiotechEntitySpans>() {
+            public BiotechEntitySpans extract(BiotechParser parser, String document) throws Exception {
+                return parser.extractBiotechEntitySpans(document);
+            }
+
+            public void deliver(int index, String document, BiotechEntitySpans spans) throws Exception {
+                handler.onResult(index, document, spans);
+            }
+        }, errorHandler);
+    }
+
+    private <T> void extract(Iterator<String> documents, final Extraction<T> extraction,
+                             ErrorHandler errorHandler) {
+        Deque<Future<T>> pending = new ArrayDeque<Future<T>>();
+        Deque<String> pendingDocuments = new ArrayDeque<String>();
+        int delivered = 0;
+        try {
+            while (documents.hasNext()) {
+                if (pending.size() >= maxPending) {
+                    deliver(pending.poll(), pendingDocuments.poll(), delivered++, extraction, errorHandler);
+                }
+                final String document = documents.next();
+                pending.add(executor.submit(new Callable<T>() {
+                    public T call() throws Exception {
+                        return extraction.extract(parsers.get(), document);
+                    }
+                }));
+                pendingDocuments.add(document);
+
+                // deliver without blocking what is already done
+                while (!pending.isEmpty() && pending.peek().isDone()) {
+                    deliver(pending.poll(), pendingDocuments.poll(), delivered++, extraction, errorHandler);
+                }
+            }
+            while (!pending.isEmpty()) {
+                deliver(pending.poll(), pendingDocuments.poll(), delivered++, extraction, errorHandler);
+            }
+        } finally {
+            for (Future<T> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private <T> void deliver(Future<T> future,
+                             String document,
+                             int index,
+                             Extraction<T> extraction,
+                             ErrorHandler errorHandler) {
+        try {
+            T result;
+            try {
+                result = future.get();
+            } catch (ExecutionException e) {
+                // errors other than exceptions (out of memory...) are not specific to the document
+                if ( (errorHandler == null) || !(e.getCause() instanceof Exception) )
+                    throw new GrobidException("An exception occured while extracting entities from document " + index,
+                        e.getCause());
+                errorHandler.onError(index, document, (Exception) e.getCause());
+                return;
+            }
+            extraction.deliver(index, document, result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrobidException("Interrupted while waiting for the extraction of document " + index, e);
+        } catch (GrobidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("An exception occured while handling the result of document " + index, e);
+        }
+    }
+
+    /**
+     * Metrics of the extractions made by the workers, to be set before the first extraction.
+     */
+    public void setMetrics(BiotechMetrics metrics) {
+        this.metrics = (metrics == null) ? NoOpBiotechMetrics.INSTANCE : metrics;
+    }
+
+    public BiotechMetrics getMetrics() {
+        return metrics;
+    }
+
+    public BiotechTaggerPool getTaggerPool() {
+        return taggerPool;
+    }
+
+    /**
+     * Stop the workers, waiting for the running extractions to finish, and release their 
+     * taggers.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                LOGGER.warn("Biotech extraction workers did not terminate in time, forcing shutdown.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (ownTaggerPool)
+            taggerPool.close();
+    }
+
+}
@@ -2,20 +2,32 @@ package org.grobid.core.engines;
 
 import org.grobid.core.GrobidModels;
 import org.grobid.core.engines.AbstractParser;
+import org.grobid.core.engines.tagging.CRFPPTagger;
+import org.grobid.core.engines.tagging.GenericTagger;
 import org.grobid.core.engines.tagging.GenericTaggerUtils;
+import org.grobid.core.engines.tagging.WapitiTagger;
 import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
 import org.grobid.core.exceptions.GrobidException;
-import org.grobid.core.features.FeaturesVectorBiotechEntity;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+import org.grobid.core.utilities.GrobidProperties;
 import org.grobid.core.utilities.TextUtilities;
-import org.grobid.core.lexicon.BioLexicon;
-import org.grobid.core.utilities.OffsetPosition;
 import org.grobid.core.layout.LayoutToken;
-import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.metrics.BiotechMetrics;
+import org.grobid.core.metrics.BiotechMetrics.Stage;
+import org.grobid.core.metrics.ExtractionTrace;
+import org.grobid.core.metrics.NoOpBiotechMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.HashCode;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.Map;
 
 /**
  * Biotech entities extraction.
@@ -23,188 +35,682 @@ import java.util.StringTokenizer;
  * @author Patrice Lopez
  */
 public class BiotechParser extends AbstractParser {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechParser.class);
+
+    /**
+     * System property giving the default duration in milliseconds above which an extraction 
+     * call is logged as slow, no logging if not set.
+     */
+    public static final String SLOW_EXTRACTION_PROPERTY = "grobid.bio.slowExtraction.ms";
+
+	private static final String BIOTECH_LABEL = "<biotech>";
+
+    // entity types of the model, as given by the labels, in the order of their codes in
+    // BiotechEntitySpans
+    private static final String[] ENTITY_TYPES = {"<protein>", "<dna>", "<rna>", "<cell_line>", "<cell_type>"};
+
+    // dedicated tagger instance, if null the tagger shared by all the parsers for the model is used
+    private GenericTagger tagger = null;
 
-	private BioLexicon lexicon = BioLexicon.getInstance();
+    // pool where a tagger is borrowed for each labelling, if not null
+    private BiotechTaggerPool taggerPool = null;
+
+    // optional cache of the results
+    private BiotechResultCache resultCache = null;
+
+    // measures of the extraction calls
+    private BiotechMetrics metrics = NoOpBiotechMetrics.INSTANCE;
+
+    // duration above which an extraction call is logged, negative for no logging
+    private long slowExtractionNanos = millisToNanos(Long.getLong(SLOW_EXTRACTION_PROPERTY, -1));
 
     public BiotechParser() {
         super(GrobidModels.ENTITIES_BIOTECH);
     }
 
+    /**
+     * Parser labelling with its own tagger instance rather than the tagger shared by all 
+     * the parsers of the model (see {@link #createTagger()}).
+     */
+    public BiotechParser(GenericTagger tagger) {
+        super(GrobidModels.ENTITIES_BIOTECH);
+        this.tagger = tagger;
+    }
+
+    /**
+     * Parser labelling with a tagger borrowed from the given pool for each labelling, so that
+     * the parser can be used by concurrent threads.
+     */
+    public BiotechParser(BiotechTaggerPool taggerPool) {
+        super(GrobidModels.ENTITIES_BIOTECH);
+        this.taggerPool = taggerPool;
+    }
+
+    /**
+     * Create a new tagger instance for the biotech model, loading the model, with the 
+     * sequence labelling engine selected in the Grobid properties. 
+     */
+    public static GenericTagger createTagger() {
+        switch (GrobidProperties.getGrobidCRFEngine()) {
+            case CRFPP:
+                return new CRFPPTagger(GrobidModels.ENTITIES_BIOTECH);
+            case WAPITI:
+                return new WapitiTagger(GrobidModels.ENTITIES_BIOTECH);
+            default:
+                throw new IllegalStateException("Unsupported Grobid sequence labelling engine: " 
+                    + GrobidProperties.getGrobidCRFEngine());
+        }
+    }
+
+    /**
+     * Use a cache of the extraction results, which can be shared by several parsers, null
+     * for no cache. 
+     */
+    public void setResultCache(BiotechResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public BiotechResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Metrics receiving the time of each stage of the extraction calls, the lengths of the 
+     * labelled sequences and the memory allocated by the calls. Nothing is measured with the 
+     * default {@link NoOpBiotechMetrics} unless the slow extraction logging is used. The 
+     * results taken from the result cache are not measured. 
+     */
+    public void setMetrics(BiotechMetrics metrics) {
+        this.metrics = (metrics == null) ? NoOpBiotechMetrics.INSTANCE : metrics;
+    }
+
+    public BiotechMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Log the extraction calls longer than the given duration, with the time of each stage, 
+     * negative for no logging.
+     */
+    public void setSlowExtractionThresholdMillis(long thresholdMillis) {
+        this.slowExtractionNanos = millisToNanos(thresholdMillis);
+    }
+
+    private static long millisToNanos(long millis) {
+        return (millis < 0) ? -1 : millis * 1000000L;
+    }
+
+    /**
+     * Start the measures of an extraction call, null if nothing has to be measured.
+     */
+    private ExtractionTrace startTrace() {
+        if (!metrics.isEnabled() && (slowExtractionNanos < 0))
+            return null;
+        return ExtractionTrace.start(metrics.isAllocationTracked());
+    }
+
+    private void finishTrace(ExtractionTrace trace, String firstText) {
+        long nanos = trace.finish(metrics);
+        if ( (slowExtractionNanos >= 0) && (nanos > slowExtractionNanos) ) {
+            String excerpt = (firstText == null) ? "" : 
+                (firstText.length() > 80) ? firstText.substring(0, 80) + "..." : firstText;
+            LOGGER.warn("Slow biotech extraction: " + (nanos / 1000000) + " ms for " + trace.getNbTexts() 
+                + " text(s), " + trace.getNbCharacters() + " characters, " + trace.getNbTokens() + " tokens (" 
+                + trace.describeStages() + "): " + excerpt);
+        }
+    }
+
+    @Override
+    public String label(Iterable<String> data) {
+        if (tagger != null)
+            return tagger.label(data);
+        if (taggerPool != null) {
+            GenericTagger pooledTagger = taggerPool.borrow();
+            boolean labelled = false;
+            try {
+                String result = pooledTagger.label(data);
+                labelled = true;
+                return result;
+            } finally {
+                release(pooledTagger, labelled);
+            }
+        }
+        return super.label(data);
+    }
+
+    @Override
+    public String label(String data) {
+        if (tagger != null)
+            return tagger.label(data);
+        if (taggerPool != null) {
+            GenericTagger pooledTagger = taggerPool.borrow();
+            boolean labelled = false;
+            try {
+                String result = pooledTagger.label(data);
+                labelled = true;
+                return result;
+            } finally {
+                release(pooledTagger, labelled);
+            }
+        }
+        return super.label(data);
+    }
+
+    /**
+     * Give back a pooled tagger, which is discarded if the labelling failed.
+     */
+    private void release(GenericTagger pooledTagger, boolean labelled) {
+        if (labelled)
+            taggerPool.release(pooledTagger);
+        else
+            taggerPool.invalidate(pooledTagger);
+    }
+
+    /**
+     * Release the dedicated tagger instance if any, otherwise the shared tagger. The pooled
+     * taggers are managed by their pool. 
+     */
+    @Override
+    public void close() throws IOException {
+        if (tagger != null)
+            tagger.close();
+        else if (taggerPool == null)
+            super.close();
+    }
+
     /**
      * Extract all entities from a simple piece of text.
      */
     public List<BiotechEntity> extractBiotechEntities(String text) throws Exception {
-//        int nbRes = 0;
+        BiotechEntitySpans spans = extractBiotechEntitySpans(text);
+        return (spans == null) ? null : spans.toEntities();
+    }
+
+    /**
+     * Extract all entities from a simple piece of text, as spans rather than entity objects, 
+     * null for a null, empty or non-tokenizable text.
+     */
+    public BiotechEntitySpans extractBiotechEntitySpans(String text) throws Exception {
         if (text == null)
             return null;
         if (text.length() == 0)
             return null;
-        List<BiotechEntity> entities;
+        if (resultCache != null) {
+            String normalisedText = BiotechResultCache.normalise(text);
+            if (normalisedText.length() > 0) {
+                HashCode key = BiotechResultCache.key(normalisedText);
+                int offset = BiotechResultCache.leadingSpaces(text);
+                BiotechEntitySpans spans = resultCache.getSpans(key, offset);
+                if (spans == null) {
+                    spans = extract(normalisedText);
+                    resultCache.put(key, spans);
+                    if (spans != null)
+                        spans.shift(offset);
+                }
+                return spans;
+            }
+        }
+        return extract(text);
+    }
+
+    private BiotechEntitySpans extract(String text) {
+        BiotechEntitySpans spans;
+        ExtractionTrace trace = startTrace();
+        BiotechExtractionContext context = BiotechExtractionContext.acquire();
         try {
-            text = text.replace("\n", " ");
-            List<LayoutToken> tokenizations = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+            BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text, context.getTokens(0));
+            if (trace != null) {
+                trace.addText(text.length());
+                trace.mark(Stage.TOKENIZATION);
+            }
 
-            if (tokenizations.size() == 0)
+            if (tokens.size() == 0)
                 return null;
 
-            List<String> textBlocks = new ArrayList<String>();
+            StringBuilder ress = context.getFeatures();
+            addFeatures(text, tokens, context, trace);
+            ress.append("\n");
+			String res = label(ress.toString());
+            if (trace != null)
+                trace.mark(Stage.LABELLING);
+			
+            spans = new BiotechEntitySpans();
+            resultExtraction(res, 0, res.length(), tokens, spans);
+            if (trace != null)
+                trace.mark(Stage.RESULT_EXTRACTION);
+        } catch (Exception e) {
+            throw new GrobidException("An exception occured while running Grobid.", e);
+        } finally {
+            context.release();
+            if (trace != null)
+                finishTrace(trace, text);
+        }
+        return spans;
+    }
+
+    /**
+     * Extract all entities from a list of texts. All the texts are labelled with a single 
+     * call to the tagger, as a sequence of independent sequences separated by an empty line, 
+     * and the labelled result is then split back per text. 
+     *
+     * The returned list has the same size and order as the input list, the result for a 
+     * given text being the same as with {@link #extractBiotechEntities(String)} (in 
+     * particular null for a null, empty or non-tokenizable text). 
+     */
+    public List<List<BiotechEntity>> extractBiotechEntities(List<String> texts) throws Exception {
+        List<BiotechEntitySpans> allSpans = extractBiotechEntitySpans(texts);
+        if (allSpans == null)
+            return null;
+        List<List<BiotechEntity>> results = new ArrayList<List<BiotechEntity>>(allSpans.size());
+        for (BiotechEntitySpans spans : allSpans) {
+            results.add((spans == null) ? null : spans.toEntities());
+        }
+        return results;
+    }
+
+    /**
+     * Extract all entities from a list of texts as {@link #extractBiotechEntities(List)}, as 
+     * spans rather than entity objects. 
+     */
+    public List<BiotechEntitySpans> extractBiotechEntitySpans(List<String> texts) throws Exception {
+        if (texts == null)
+            return null;
+        if (resultCache == null)
+            return extract(texts);
 
-            for(LayoutToken token : tokenizations) {	
-                String tok = token.getText();
-                if (!tok.equals(" ")) {
-                    textBlocks.add(tok + "\t<biotech>");
+        // only the texts not in the cache are labelled, once each
+        List<BiotechEntitySpans> results = new ArrayList<BiotechEntitySpans>(texts.size());
+        List<String> missedTexts = new ArrayList<String>();
+        List<HashCode> missedKeys = new ArrayList<HashCode>();
+        Map<HashCode, Integer> missedPositions = new HashMap<HashCode, Integer>();
+        // position in the missed texts for each text, -1 if the result is already known
+        int[] positions = new int[texts.size()];
+        int i = 0;
+        for (String text : texts) {
+            BiotechEntitySpans spans = null;
+            positions[i] = -1;
+            if ( (text != null) && (text.length() > 0) ) {
+                String normalisedText = BiotechResultCache.normalise(text);
+                if (normalisedText.length() == 0) {
+                    // only white spaces, nothing to cache
+                    spans = extract(text);
+                } else {
+                    HashCode key = BiotechResultCache.key(normalisedText);
+                    spans = resultCache.getSpans(key, BiotechResultCache.leadingSpaces(text));
+                    if (spans == null) {
+                        Integer position = missedPositions.get(key);
+                        if (position == null) {
+                            position = missedTexts.size();
+                            missedPositions.put(key, position);
+                            missedTexts.add(normalisedText);
+                            missedKeys.add(key);
+                        }
+                        positions[i] = position;
+                    }
                 }
             }
-            StringBuilder ress = new StringBuilder();
-            int posit = 0;
-			int currentBioNameIndex = 0;
-			List<OffsetPosition> positions = lexicon.tokenPositionsBioNames(tokenizations);
-            for (String block : textBlocks) {
-				Boolean bioToken = false;
-				Boolean bioName = false;
-				if (lexicon.inBioDictionary(block)) {
-					bioToken = true;
-				}
-				// do we have a biomedicine term at position posit?				
-				for(int mm = currentBioNameIndex; mm < positions.size(); mm++) {
-					if ( (posit >= positions.get(mm).start) && (posit <= positions.get(mm).end) ) {
-						bioName = true;
-						currentBioNameIndex = mm;
-						break;
-					}
-					else if (posit < positions.get(mm).start) {
-						bioName = false;
-						break;
-					}
-					else if (posit > positions.get(mm).end) {
-						continue;
-					}
-				}
-				
-                ress.append(FeaturesVectorBiotechEntity
-                        .addFeaturesBiotechEntities(block, textBlocks.size(), posit, bioToken, bioName)
-                        .printVector());
-                posit++;
-				bioToken = false;
-				bioName = false;
+            results.add(spans);
+            i++;
+        }
+        if (missedTexts.size() > 0) {
+            List<BiotechEntitySpans> missedResults = extract(missedTexts);
+            for (int j = 0; j < missedResults.size(); j++) {
+                resultCache.put(missedKeys.get(j), missedResults.get(j));
             }
-            ress.append("\n");
-			String res = label(ress.toString());
-			
-            entities = resultExtraction(text, res, tokenizations);
+            for (i = 0; i < texts.size(); i++) {
+                if (positions[i] != -1) {
+                    BiotechEntitySpans spans = missedResults.get(positions[i]);
+                    results.set(i, (spans == null) ? null : 
+                        spans.copy(BiotechResultCache.leadingSpaces(texts.get(i))));
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<BiotechEntitySpans> extract(List<String> texts) {
+        List<BiotechEntitySpans> results = new ArrayList<BiotechEntitySpans>(texts.size());
+        if (texts.size() == 0)
+            return results;
+        ExtractionTrace trace = startTrace();
+        BiotechExtractionContext context = BiotechExtractionContext.acquire();
+        try {
+            // texts with at least one token
+            boolean[] tokenized = context.getTokenizedFlags(texts.size());
+            // number of sequences actually sent to the tagger for each text (0 or 1)
+            boolean[] labelled = context.getLabelledFlags(texts.size());
+            StringBuilder ress = context.getFeatures();
+            int i = 0;
+            for (String text : texts) {
+                if ( (text != null) && (text.length() > 0) ) {
+                    BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text, context.getTokens(i));
+                    if (trace != null) {
+                        trace.addText(text.length());
+                        trace.mark(Stage.TOKENIZATION);
+                    }
+                    tokenized[i] = (tokens.size() > 0);
+                    if (tokenized[i]) {
+                        labelled[i] = (addFeatures(text, tokens, context, trace) > 0);
+                        if (labelled[i])
+                            ress.append("\n");
+                    }
+                }
+                i++;
+            }
+
+            String result = (ress.length() > 0) ? label(ress.toString()) : null;
+            if (result == null)
+                result = "";
+            if (trace != null)
+                trace.mark(Stage.LABELLING);
+
+            // the labelled sequences are decoded in place, in the order of the texts
+            int pos = 0;
+            for (i = 0; i < texts.size(); i++) {
+                if (!tokenized[i]) {
+                    results.add(null);
+                } 
+                else if (!labelled[i]) {
+                    // only white spaces, nothing to label
+                    results.add(new BiotechEntitySpans());
+                }
+                else {
+                    int start = sequenceStart(result, pos);
+                    if (start >= result.length()) {
+                        throw new GrobidException("The number of labelled sequences does not match the number of texts.");
+                    }
+                    pos = sequenceEnd(result, start);
+                    BiotechEntitySpans spans = new BiotechEntitySpans();
+                    resultExtraction(result, start, pos, context.getTokens(i), spans);
+                    results.add(spans);
+                }
+            }
+            if (trace != null)
+                trace.mark(Stage.RESULT_EXTRACTION);
+        } catch (GrobidException e) {
+            throw e;
         } catch (Exception e) {
             throw new GrobidException("An exception occured while running Grobid.", e);
+        } finally {
+            context.release();
+            if (trace != null)
+                finishTrace(trace, texts.get(0));
+        }
+        return results;
+    }
+
+    /**
+     * A text prepared for the tagger by {@link #featurize(String)}: its tokens and the feature 
+     * lines of its non-space tokens. 
+     */
+    public static final class Featurized {
+        private final String text;
+        private final BioTokenizer.Tokens tokens;
+        private final String features;
+        private final int nbTokens;
+
+        /**
+         * @param text     the text
+         * @param tokens   the tokens of the text
+         * @param features the tagger input, one line per non-space token followed by an empty 
+         *                 line, null if there is no non-space token
+         * @param nbTokens number of non-space tokens
+         */
+        public Featurized(String text, BioTokenizer.Tokens tokens, String features, int nbTokens) {
+            this.text = text;
+            this.tokens = tokens;
+            this.features = features;
+            this.nbTokens = nbTokens;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public BioTokenizer.Tokens getTokens() {
+            return tokens;
+        }
+
+        /**
+         * The tagger input, null if there is nothing to label.
+         */
+        public String getFeatures() {
+            return features;
+        }
+
+        public int getNbTokens() {
+            return nbTokens;
         }
-        return entities;
+    }
+
+    /**
+     * First stage of the extraction of a text, tokenization and feature generation, to be 
+     * followed by the labelling of the features and by {@link #decode(Featurized, String)}, 
+     * possibly on other threads. The result does not depend on the thread. 
+     *
+     * @return null for a null, empty or non-tokenizable text
+     */
+    public Featurized featurize(String text) {
+        if ( (text == null) || (text.length() == 0) )
+            return null;
+        BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text);
+        if (tokens.size() == 0)
+            return null;
+        BiotechExtractionContext context = BiotechExtractionContext.acquire();
+        try {
+            int nbTokens = addFeatures(text, tokens, context, null);
+            if (nbTokens == 0)
+                return new Featurized(text, tokens, null, 0);
+            context.getFeatures().append("\n");
+            return new Featurized(text, tokens, context.getFeatures().toString(), nbTokens);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Last stage of the extraction of a text: the entities given by the labelled features of 
+     * a featurized text, the same as given by {@link #extractBiotechEntitySpans(String)}. 
+     *
+     * @param labelled the tagger output for the features, ignored if there was nothing to label
+     */
+    public static BiotechEntitySpans decode(Featurized featurized, String labelled) {
+        BiotechEntitySpans spans = new BiotechEntitySpans();
+        if ( (featurized.getFeatures() != null) && (labelled != null) )
+            resultExtraction(labelled, 0, labelled.length(), featurized.getTokens(), spans);
+        return spans;
+    }
+
+    /**
+     * Append to the feature buffer of the context the feature vectors of the non-space tokens 
+     * of a tokenized text, one token per line. 
+     *
+     * @param trace measures of the extraction call, or null
+     * @return the number of tokens added
+     */
+    private int addFeatures(String text, BioTokenizer.Tokens tokens, BiotechExtractionContext context, 
+                            ExtractionTrace trace) {
+        FeaturesWriterBiotechEntity featuresWriter = context.getFeaturesWriter();
+        int posit = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.isSpace(i)) {
+                continue;
+            }
+            featuresWriter.addToken(tokens.text(i), BIOTECH_LABEL);
+            posit++;
+        }
+        if (trace != null) {
+            trace.mark(Stage.FEATURES);
+            if (posit > 0) {
+                trace.addTokens(posit);
+                metrics.recordSequence(posit);
+            }
+        }
+        return posit;
+    }
+
+    /**
+     * Start of the next sequence of a labelled result from the given position, sequences 
+     * being separated by empty lines (or lines with only white spaces), the length of the 
+     * result if there is no more sequence.
+     */
+    private static int sequenceStart(String result, int pos) {
+        while (pos < result.length()) {
+            int lineEnd = lineEnd(result, pos, result.length());
+            if (!isBlank(result, pos, lineEnd))
+                return pos;
+            pos = lineEnd + 1;
+        }
+        return result.length();
+    }
+
+    /**
+     * End (exclusive) of the sequence starting at the given position of a labelled result.
+     */
+    private static int sequenceEnd(String result, int pos) {
+        while (pos < result.length()) {
+            int lineEnd = lineEnd(result, pos, result.length());
+            if (isBlank(result, pos, lineEnd))
+                return pos;
+            pos = lineEnd + 1;
+        }
+        return result.length();
+    }
+
+    private static int lineEnd(CharSequence result, int pos, int end) {
+        while ( (pos < end) && (result.charAt(pos) != '\n') )
+            pos++;
+        return pos;
+    }
+
+    private static boolean isBlank(CharSequence result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (result.charAt(i) > ' ')
+                return false;
+        }
+        return true;
     }
 
     /**
      * Extract results from a labelled header.
      */
     public List<BiotechEntity> resultExtraction(String text, 
-												String result,
+                                                String result,
                                                 List<LayoutToken> tokenizations) {
-	
-		List<BiotechEntity> entities = new ArrayList<BiotechEntity>();
-        StringTokenizer stt = new StringTokenizer(result, "\n");
-		String label = null; // label
-        String actual = null; // token
-		int offset = 0;
-		int addedOffset = 0;
-		int p = 0; // iterator for the tokenizations for restauring the original tokenization with
-        // respect to spaces
-		BiotechEntity currentEntity = null;
-		while (stt.hasMoreTokens()) {
-            String line = stt.nextToken();
-            if (line.trim().length() == 0) {
+        return resultExtraction(result, 0, result.length(), tokenizations);
+    }
+
+    /**
+     * Extract the entities from the labelled result of a text, found in [start, end) of the 
+     * given buffer, for a text tokenized into layout tokens, the offsets of the tokens being 
+     * their cumulated lengths. 
+     */
+    public static List<BiotechEntity> resultExtraction(CharSequence result, 
+                                                       int start, 
+                                                       int end, 
+                                                       List<LayoutToken> tokenizations) {
+        return resultExtraction(result, start, end, BioTokenizer.Tokens.fromLayoutTokens(tokenizations));
+    }
+
+    /**
+     * Extract the entities from the labelled result of a text, found in [start, end) of the 
+     * given buffer. The labelled result has one line per non-space token of the tokenization 
+     * of the text, in the same order, the last field of a line being the label (fields are 
+     * separated by tabulations or spaces). 
+     * 
+     * The buffer is read once and the offsets of a token are given by the tokenization, the 
+     * text of the tokens of the result is not used. 
+     */
+    public static List<BiotechEntity> resultExtraction(CharSequence result, 
+                                                       int start, 
+                                                       int end, 
+                                                       BioTokenizer.Tokens tokens) {
+        BiotechEntitySpans spans = new BiotechEntitySpans();
+        resultExtraction(result, start, end, tokens, spans);
+        return spans.toEntities();
+    }
+
+    /**
+     * Extract the entities from the labelled result of a text as by 
+     * {@link #resultExtraction(CharSequence, int, int, BioTokenizer.Tokens)}, adding them to 
+     * the given spans rather than creating an object per entity. 
+     */
+    public static void resultExtraction(CharSequence result, 
+                                        int start, 
+                                        int end, 
+                                        BioTokenizer.Tokens tokens, 
+                                        BiotechEntitySpans spans) {
+        int current = -1; // index of the current entity in the spans, -1 if none
+        int p = 0; // index of the next token in the tokenization
+        int previousEnd = -1; // end offset of the previous labelled token
+        int pos = start;
+        while (pos < end) {
+            int lineStart = pos;
+            int lineEnd = lineEnd(result, pos, end);
+            pos = lineEnd + 1;
+            while ( (lineStart < lineEnd) && (result.charAt(lineStart) <= ' ') )
+                lineStart++;
+            while ( (lineEnd > lineStart) && (result.charAt(lineEnd - 1) <= ' ') )
+                lineEnd--;
+            if (lineStart == lineEnd)
                 continue;
+
+            // the token of the line is the next non-space token of the tokenization
+            while ( (p < tokens.size()) && tokens.isSpace(p) ) {
+                p++;
             }
-			
-			StringTokenizer st2 = new StringTokenizer(line, "\t");
-            boolean start = true;
-            label = null;
-            actual = null;
-            while (st2.hasMoreTokens()) {
-                if (start) {
-                    actual = st2.nextToken().trim();
-                    start = false;
-
-                    boolean strop = false;
-                    while ((!strop) && (p < tokenizations.size())) {
-                        String tokOriginal = tokenizations.get(p).getText();
-						addedOffset += tokOriginal.length();
-						if (tokOriginal.equals(actual)) {
-                            strop = true;
-                        }
-                        p++;
+            if (p == tokens.size()) {
+                throw new GrobidException("The labelled result has more tokens than the text.");
+            }
+            int tokenStart = tokens.start(p);
+            int tokenEnd = tokens.end(p);
+            p++;
+
+            int labelStart = lineEnd;
+            while ( (labelStart > lineStart) && !isFieldSeparator(result.charAt(labelStart - 1)) )
+                labelStart--;
+            if ( (labelStart > lineStart) && (lineEnd - labelStart >= 2) && (result.charAt(labelStart + 1) == '-') ) {
+                char prefix = result.charAt(labelStart);
+                if ( (prefix == 'B') || (prefix == 'I') ) {
+                    byte type = entityType(result, labelStart + 2, lineEnd, spans);
+                    boolean sameType = (current != -1) && (spans.type(current) == type);
+                    if ( sameType && ( (prefix == 'I') || (spans.end(current) == previousEnd) ) ) {
+                        // continuation of the current entity
+                        spans.setLastEnd(tokenEnd);
+                    } else {
+                        spans.add(type, tokenStart, tokenEnd);
+                        current = spans.size() - 1;
                     }
-                } else {
-                    label = st2.nextToken().trim();
                 }
             }
+            previousEnd = tokenEnd;
+        }
+    }
 
-            if (label == null) {
-				offset += addedOffset;
-				addedOffset = 0;
-                continue;
-            }
+    private static boolean isFieldSeparator(char c) {
+        return (c == '\t') || (c == ' ');
+    }
+
+    /**
+     * Code in the given spans of the entity type of a label, lowercased, without creating a 
+     * new string for the types of the model.
+     */
+    private static byte entityType(CharSequence result, int start, int end, BiotechEntitySpans spans) {
+        for (byte i = 0; i < ENTITY_TYPES.length; i++) {
+            if (regionMatchesIgnoreCase(ENTITY_TYPES[i], result, start, end))
+                return i;
+        }
+        return spans.typeCode(result.subSequence(start, end).toString().toLowerCase());
+    }
+
+    private static boolean regionMatchesIgnoreCase(String type, CharSequence s, int start, int end) {
+        if (type.length() != end - start)
+            return false;
+        for (int i = 0; i < type.length(); i++) {
+            if (type.charAt(i) != Character.toLowerCase(s.charAt(start + i)))
+                return false;
+        }
+        return true;
+    }
 
-			if (actual != null) {
-				if (label.startsWith("B-")) {      
-					if (currentEntity != null) {
-						int localPos = currentEntity.getOffsetEnd();
-						if (label.length() > 1) {  
-							String subtag = label.substring(2,label.length()).toLowerCase();
-							if (currentEntity.getRawName().equals(subtag) && 
-							   ( (localPos == offset) ) ) {
-								currentEntity.setOffsetEnd(offset+addedOffset);
-								offset += addedOffset;
-								addedOffset = 0;	
-								continue;
-							}														
-							entities.add(currentEntity);
-						}
-					}
-					if (label.length() > 1) {  
-						String subtag = label.substring(2,label.length()).toLowerCase();
-						currentEntity = new BiotechEntity(subtag);   
-						//if (tokenizations.get(offset) == " ") {
-						if ( text.charAt(offset) == ' ') {	
-							currentEntity.setOffsetStart(offset+1);
-						}
-						else
-							currentEntity.setOffsetStart(offset);
-						currentEntity.setOffsetEnd(offset+addedOffset);
-					}  
-				}
-				else if (label.startsWith("I-")) {  
-					if (label.length() > 1) {  
-						String subtag = label.substring(2,label.length()).toLowerCase();
-
-					    if ( (currentEntity != null) && (currentEntity.getRawName().equals(subtag)) ) {
-							currentEntity.setOffsetEnd(offset+addedOffset);		
-						}
-						else {
-							// should not be the case, but we add the new entity, for robustness      
-							if (currentEntity != null) 
-								entities.add(currentEntity);
-							currentEntity = new BiotechEntity(subtag);   
-							currentEntity.setOffsetStart(offset);
-							currentEntity.setOffsetEnd(offset+addedOffset);
-						}
-				   	}
-				}
-				
-				offset += addedOffset;
-				addedOffset = 0;
-			}			
-		}
-		
-		if (currentEntity != null) {
-			entities.add(currentEntity);
-		}
-		
-		return entities;
-	}
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,457 @@
+package org.grobid.core.engines;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.metrics.BiotechMetrics;
+import org.grobid.core.metrics.BiotechMetrics.Stage;
+import org.grobid.core.metrics.NoOpBiotechMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pipelined extraction of biotech entities over a stream of documents.
+ *
+ * The extraction of a document is split into three stages run by separate threads: the
+ * tokenization and feature generation ({@link BiotechParser#featurize(String)}), the labelling
+ * by the native tagger, and the decoding of the labelled result
+ * ({@link BiotechParser#decode(BiotechParser.Featurized, String)}). The stages are connected by
+ * bounded queues, so that the features of the next documents are generated while the current
+ * ones are labelled, and each stage has its own number of threads. The throughput is then
+ * limited by the slowest stage rather than by the sum of the stages, as with
+ * {@link BiotechExtractionService} where a worker runs all the stages of a document. The busy
+ * time of each stage ({@link #getBusyNanos(Stage)}) tells which stage needs more threads.
+ *
+ * The labelling threads use taggers borrowed from a {@link BiotechTaggerPool}, which should
+ * have one instance per labelling thread. Results are delivered in the order of the input
+ * documents, from the calling thread, and are identical to the ones of
+ * {@link BiotechParser#extractBiotechEntitySpans(String)} without a result cache.
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechPipelineExecutor implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechPipelineExecutor.class);
+
+    // end of the input of a stage thread
+    private static final Job END = new Job(-1, null);
+
+    /**
+     * A document going through the stages.
+     */
+    private static final class Job {
+        final int index;
+        final String document;
+        final long startNanos = System.nanoTime();
+
+        // results of the stages, each one written by one thread before being queued
+        BiotechParser.Featurized featurized;
+        String labelled;
+
+        // the result is no longer expected, the remaining stages are skipped
+        volatile boolean cancelled = false;
+
+        private boolean done = false;
+        private BiotechEntitySpans spans;
+        private Throwable error;
+
+        Job(int index, String document) {
+            this.index = index;
+            this.document = document;
+        }
+
+        synchronized void complete(BiotechEntitySpans spans) {
+            this.spans = spans;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable error) {
+            this.error = error;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (!done)
+                wait();
+        }
+
+        synchronized BiotechEntitySpans getSpans() {
+            return spans;
+        }
+
+        synchronized Throwable getError() {
+            return error;
+        }
+    }
+
+    private final BiotechParser parser;
+    // tagger pool created by the executor and closed with it, or null
+    private final BiotechTaggerPool ownTaggerPool;
+    private final int maxPending;
+
+    private final BlockingQueue<Job> featuresQueue;
+    private final BlockingQueue<Job> labellingQueue;
+    private final BlockingQueue<Job> decodingQueue;
+    private final int nbFeaturizers;
+
+    private final Map<Stage, AtomicLong> busyNanos = new EnumMap<Stage, AtomicLong>(Stage.class);
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    private volatile BiotechMetrics metrics = NoOpBiotechMetrics.INSTANCE;
+    private volatile boolean closed = false;
+
+    /**
+     * Executor with its own tagger pool, with one tagger per labelling thread.
+     *
+     * @param nbFeaturizers number of tokenization and feature generation threads
+     * @param nbTaggers     number of labelling threads
+     * @param nbDecoders    number of decoding threads
+     * @param queueCapacity capacity of the queue in front of each stage
+     */
+    public BiotechPipelineExecutor(int nbFeaturizers, int nbTaggers, int nbDecoders, int queueCapacity) {
+        this(null, nbFeaturizers, nbTaggers, nbDecoders, queueCapacity);
+    }
+
+    /**
+     * @param parser        parser featurizing and labelling the documents from several threads,
+     *                      e.g. labelling with a {@link BiotechTaggerPool}, or null for a parser
+     *                      with a tagger pool created by the executor, with one tagger per
+     *                      labelling thread
+     * @param nbFeaturizers number of tokenization and feature generation threads
+     * @param nbTaggers     number of labelling threads
+     * @param nbDecoders    number of decoding threads
+     * @param queueCapacity capacity of the queue in front of each stage
+     */
+    public BiotechPipelineExecutor(BiotechParser parser, int nbFeaturizers, int nbTaggers, int nbDecoders,
+                                   int queueCapacity) {
+        if ( (nbFeaturizers < 1) || (nbTaggers < 1) || (nbDecoders < 1) )
+            throw new IllegalArgumentException("Each stage must have at least one thread: " + nbFeaturizers
+                + ", " + nbTaggers + ", " + nbDecoders);
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("The capacity of the queues must be at least 1: " + queueCapacity);
+        if (parser == null) {
+            // the models are loaded once here and not lazily by the stage threads
+            ownTaggerPool = new BiotechTaggerPool(nbTaggers);
+            ownTaggerPool.warmUp(nbTaggers);
+            parser = new BiotechParser(ownTaggerPool);
+        } else {
+            ownTaggerPool = null;
+        }
+        this.parser = parser;
+        this.nbFeaturizers = nbFeaturizers;
+        // enough documents in flight to fill all the queues and all the threads
+        maxPending = 3 * queueCapacity + nbFeaturizers + nbTaggers + nbDecoders;
+        featuresQueue = new ArrayBlockingQueue<Job>(queueCapacity);
+        labellingQueue = new ArrayBlockingQueue<Job>(queueCapacity);
+        decodingQueue = new ArrayBlockingQueue<Job>(queueCapacity);
+
+        startStage(Stage.FEATURES, "biotech-features-", nbFeaturizers, featuresQueue, labellingQueue, nbTaggers);
+        startStage(Stage.LABELLING, "biotech-labelling-", nbTaggers, labellingQueue, decodingQueue, nbDecoders);
+        startStage(Stage.RESULT_EXTRACTION, "biotech-decoding-", nbDecoders, decodingQueue, null, 0);
+    }
+
+    private void startStage(Stage stage, String name, int nbThreads, BlockingQueue<Job> input,
+                            BlockingQueue<Job> output, int nbNextThreads) {
+        busyNanos.put(stage, new AtomicLong());
+        AtomicInteger running = new AtomicInteger(nbThreads);
+        for (int i = 1; i <= nbThreads; i++) {
+            Thread thread = new Thread(new StageWorker(stage, input, output, running, nbNextThreads), name + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Loop of a stage thread, until the end of its input.
+     */
+    private final class StageWorker implements Runnable {
+        private final Stage stage;
+        private final BlockingQueue<Job> input;
+        // input of the next stage, null for the last stage
+        private final BlockingQueue<Job> output;
+        // threads of the stage still running
+        private final AtomicInteger running;
+        private final int nbNextThreads;
+
+        StageWorker(Stage stage, BlockingQueue<Job> input, BlockingQueue<Job> output, AtomicInteger running,
+                    int nbNextThreads) {
+            this.stage = stage;
+            this.input = input;
+            this.output = output;
+            this.running = running;
+            this.nbNextThreads = nbNextThreads;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    Job job = input.take();
+                    if (job == END)
+                        break;
+                    if (job.cancelled)
+                        continue;
+                    long start = System.nanoTime();
+                    boolean next;
+                    try {
+                        next = process(job);
+                    } catch (Throwable e) {
+                        job.fail(e);
+                        next = false;
+                    }
+                    long nanos = System.nanoTime() - start;
+                    busyNanos.get(stage).addAndGet(nanos);
+                    if (metrics.isEnabled())
+                        metrics.recordStage(stage, nanos);
+                    if (next)
+                        output.put(job);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // the last thread of the stage ends the next stage, after all the jobs of the stage
+                if ( (running.decrementAndGet() == 0) && (output != null) ) {
+                    try {
+                        for (int i = 0; i < nbNextThreads; i++)
+                            output.put(END);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Run the stage on a job.
+         *
+         * @return true if the job goes to the next stage, false if it is completed
+         */
+        private boolean process(Job job) {
+            switch (stage) {
+                case FEATURES:
+                    job.featurized = parser.featurize(job.document);
+                    if (job.featurized == null) {
+                        job.complete(null);
+                        return false;
+                    }
+                    if (job.featurized.getFeatures() == null) {
+                        // only white spaces, nothing to label
+                        job.complete(new BiotechEntitySpans());
+                        return false;
+                    }
+                    return true;
+                case LABELLING:
+                    job.labelled = parser.label(job.featurized.getFeatures());
+                    return true;
+                default:
+                    BiotechEntitySpans spans = BiotechParser.decode(job.featurized, job.labelled);
+                    if (metrics.isEnabled()) {
+                        metrics.recordSequence(job.featurized.getNbTokens());
+                        metrics.recordExtraction(1, job.document.length(), job.featurized.getNbTokens(),
+                            System.nanoTime() - job.startNanos, -1);
+                    }
+                    job.featurized = null;
+                    job.labelled = null;
+                    job.complete(spans);
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Extract the entities of a list of documents, the result at index i corresponding
+     * to the document at index i.
+     */
+    public List<List<BiotechEntity>> extract(List<String> documents) {
+        final List<List<BiotechEntity>> results = new ArrayList<List<BiotechEntity>>(documents.size());
+        extract(documents.iterator(), new BiotechExtractionService.ResultHandler() {
+            public void onResult(int index, String document, List<BiotechEntity> entities) {
+                results.add(entities);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Extract the entities of a stream of documents, as by
+     * {@link #extractSpans(Iterator, BiotechExtractionService.SpansHandler)}.
+     */
+    public void extract(Iterator<String> documents, BiotechExtractionService.ResultHandler handler) {
+        extract(documents, handler, null);
+    }
+
+    /**
+     * Extract the entities of a stream of documents, as by
+     * {@link #extractSpans(Iterator, BiotechExtractionService.SpansHandler, BiotechExtractionService.ErrorHandler)}.
+     */
+    public void extract(Iterator<String> documents, final BiotechExtractionService.ResultHandler handler,
+                        BiotechExtractionService.ErrorHandler errorHandler) {
+        extractSpans(documents, new BiotechExtractionService.SpansHandler() {
+            public void onResult(int index, String document, BiotechEntitySpans spans) throws Exception {
+                handler.onResult(index, document, (spans == null) ? null : spans.toEntities());
+            }
+        }, errorHandler);
+    }
+
+    /**
+     * Extract the entities of a stream of documents. The documents are consumed from the
+     * iterator only when there is room in the first queue and the number of documents not yet
+     * delivered is bounded, and the handler is called from the calling thread in the order of
+     * the documents.
+     */
+    public void extractSpans(Iterator<String> documents, BiotechExtractionService.SpansHandler handler) {
+        extractSpans(documents, handler, null);
+    }
+
+    /**
+     * Extract the entities of a stream of documents as by
+     * {@link #extractSpans(Iterator, BiotechExtractionService.SpansHandler)}, the documents whose
+     * extraction failed being given to the error handler in the order of the documents. A null
+     * error handler ends the extraction with a {@link GrobidException} at the first failure.
+     */
+    public void extractSpans(Iterator<String> documents, BiotechExtractionService.SpansHandler handler,
+                             BiotechExtractionService.ErrorHandler errorHandler) {
+        if (closed)
+            throw new IllegalStateException("The pipeline executor is closed.");
+        Deque<Job> pending = new ArrayDeque<Job>();
+        int index = 0;
+        try {
+            while (documents.hasNext()) {
+                if (pending.size() >= maxPending)
+                    deliver(pending.poll(), handler, errorHandler);
+                Job job = new Job(index++, documents.next());
+                pending.add(job);
+                try {
+                    featuresQueue.put(job);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new GrobidException("Interrupted while submitting document " + job.index, e);
+                }
+
+                // deliver without blocking what is already done
+                while (!pending.isEmpty() && pending.peek().isDone())
+                    deliver(pending.poll(), handler, errorHandler);
+            }
+            while (!pending.isEmpty())
+                deliver(pending.poll(), handler, errorHandler);
+        } finally {
+            for (Job job : pending)
+                job.cancelled = true;
+        }
+    }
+
+    private void deliver(Job job, BiotechExtractionService.SpansHandler handler,
+                         BiotechExtractionService.ErrorHandler errorHandler) {
+        try {
+            job.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrobidException("Interrupted while waiting for the extraction of document " + job.index, e);
+        }
+        Throwable error = job.getError();
+        // errors other than exceptions (out of memory...) are not specific to the document
+        if ( (error != null) && ((errorHandler == null) || !(error instanceof Exception)) )
+            throw new GrobidException("An exception occured while extracting entities from document " + job.index,
+                error);
+        try {
+            if (error != null)
+                errorHandler.onError(job.index, job.document, (Exception) error);
+            else
+                handler.onResult(job.index, job.document, job.getSpans());
+        } catch (GrobidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("An exception occured while handling the result of document " + job.index, e);
+        }
+    }
+
+    /**
+     * Metrics receiving the time of the stages of each document, the decoding stage recording
+     * the extraction of a document from its submission.
+     */
+    public void setMetrics(BiotechMetrics metrics) {
+        this.metrics = (metrics == null) ? NoOpBiotechMetrics.INSTANCE : metrics;
+    }
+
+    public BiotechMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Time spent by the threads of a stage (FEATURES, LABELLING or RESULT_EXTRACTION)
+     * processing documents, the stage with the largest time per thread limiting the throughput.
+     */
+    public long getBusyNanos(Stage stage) {
+        AtomicLong nanos = busyNanos.get(stage);
+        return (nanos == null) ? 0 : nanos.get();
+    }
+
+    /**
+     * Number of documents waiting in front of a stage (FEATURES, LABELLING or RESULT_EXTRACTION).
+     */
+    public int getQueueSize(Stage stage) {
+        switch (stage) {
+            case FEATURES:
+                return featuresQueue.size();
+            case LABELLING:
+                return labellingQueue.size();
+            case RESULT_EXTRACTION:
+                return decodingQueue.size();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Stop the stage threads once the documents already submitted are processed, and release
+     * the taggers of the executor.
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            for (int i = 0; i < nbFeaturizers; i++)
+                featuresQueue.put(END);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            for (Thread thread : threads) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining > 0)
+                    thread.join(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean forced = false;
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                thread.interrupt();
+                forced = true;
+            }
+        }
+        if (forced)
+            LOGGER.warn("Biotech pipeline threads did not terminate in time, forcing shutdown.");
+        if (ownTaggerPool != null)
+            ownTaggerPool.close();
+    }
+
+}
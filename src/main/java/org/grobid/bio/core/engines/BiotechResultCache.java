@@ -0,0 +1,174 @@
+package org.grobid.core.engines;
+
+import java.io.File;
+
+import org.grobid.core.GrobidModel;
+import org.grobid.core.GrobidModels;
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Bounded cache of the extraction results, for texts which are processed again and again
+ * (duplicated abstracts, boilerplate sentences, patent claims...).
+ *
+ * A text is normalised as by the parser (end of lines replaced by spaces) and without its
+ * leading and trailing spaces, and the key is a 128 bits hash of the normalised text. The
+ * entities are stored as {@link BiotechEntitySpans} and are returned as new spans or
+ * {@link BiotechEntity} objects with offsets relative to the original text, so that the cached
+ * results can be modified by the callers.
+ *
+ * The cache is bounded by an approximate size in bytes, least recently used entries being
+ * evicted first, and records its hit, miss and eviction counts. It can be shared by
+ * concurrent parsers.
+ *
+ * The cache is invalidated when the model file changes (path, modification time or length).
+ * The model already loaded by a tagger pool is not reloaded: the cache is then refilled with
+ * the results of the previous model, and the invalidation only matters when the cache is used
+ * with a new tagger pool, which loads the new model.
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechResultCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechResultCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // minimum delay between two checks of the model version
+    private static final long VERSION_CHECK_INTERVAL_MS = 1000;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Cache<HashCode, BiotechEntitySpans> cache;
+    private final GrobidModel model;
+
+    private volatile String version = null;
+    private volatile long lastVersionCheck = 0;
+
+    public BiotechResultCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes approximate maximum size of the cached results in bytes
+     */
+    public BiotechResultCache(long maxBytes) {
+        this(maxBytes, GrobidModels.ENTITIES_BIOTECH);
+    }
+
+    BiotechResultCache(long maxBytes, GrobidModel model) {
+        this.model = model;
+        cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(new Weigher<HashCode, BiotechEntitySpans>() {
+                public int weigh(HashCode key, BiotechEntitySpans value) {
+                    // key and entry objects with the spans
+                    return 64 + value.memoryFootprint();
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Normalisation of a text as done by the parser, without the leading and trailing spaces.
+     */
+    static String normalise(String text) {
+        String normalised = text.replace('\n', ' ');
+        int start = 0;
+        int end = normalised.length();
+        while ( (start < end) && (normalised.charAt(start) == ' ') )
+            start++;
+        while ( (end > start) && (normalised.charAt(end - 1) == ' ') )
+            end--;
+        return normalised.substring(start, end);
+    }
+
+    /**
+     * Number of leading spaces of a text after normalisation, to be added to the offsets of the
+     * entities of the normalised text.
+     */
+    static int leadingSpaces(String text) {
+        int start = 0;
+        while ( (start < text.length()) && ( (text.charAt(start) == ' ') || (text.charAt(start) == '\n') ) )
+            start++;
+        return start;
+    }
+
+    static HashCode key(String normalisedText) {
+        return HASH_FUNCTION.hashString(normalisedText, Charsets.UTF_8);
+    }
+
+    /**
+     * A copy of the cached spans of a normalised text, with the given offset added, null if
+     * not cached.
+     */
+    BiotechEntitySpans getSpans(HashCode key, int offset) {
+        checkVersion();
+        BiotechEntitySpans cached = cache.getIfPresent(key);
+        if (cached == null)
+            return null;
+        return cached.copy(offset);
+    }
+
+    /**
+     * Cache the spans of a normalised text, the offsets being relative to the normalised text.
+     * The spans are copied and can be modified afterwards.
+     */
+    void put(HashCode key, BiotechEntitySpans spans) {
+        if (spans == null)
+            return;
+        cache.put(key, spans.copy(0));
+    }
+
+    /**
+     * Invalidate the cache if the model file changed since the last check.
+     */
+    private void checkVersion() {
+        long now = System.currentTimeMillis();
+        if (now - lastVersionCheck < VERSION_CHECK_INTERVAL_MS)
+            return;
+        synchronized (this) {
+            if (now - lastVersionCheck < VERSION_CHECK_INTERVAL_MS)
+                return;
+            String currentVersion = currentVersion();
+            if ( (version != null) && !version.equals(currentVersion) ) {
+                LOGGER.info("Biotech model changed, invalidating the result cache.");
+                cache.invalidateAll();
+            }
+            version = currentVersion;
+            lastVersionCheck = now;
+        }
+    }
+
+    private String currentVersion() {
+        File modelFile = new File(model.getModelPath());
+        return modelFile.getAbsolutePath() + ":" + modelFile.lastModified() + ":" + modelFile.length();
+    }
+
+    /**
+     * Hit, miss and eviction counts of the cache.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+}
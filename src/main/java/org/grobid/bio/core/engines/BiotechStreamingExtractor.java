@@ -0,0 +1,229 @@
+package org.grobid.core.engines;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.exceptions.GrobidException;
+
+/**
+ * Streaming extraction of biotech entities for very long documents.
+ *
+ * The text is read by blocks and segmented into sentences, a sentence being ended by a
+ * '.', '!' or '?' followed by white spaces and a character which is not a lowercase letter,
+ * or by an empty line. A sentence longer than the maximum window is cut at its last white
+ * space in the window. The sentences are labelled by batches, as independent sequences, which
+ * is how the model is trained, and the entities of each batch are delivered as soon as the
+ * batch is labelled, with offsets relative to the whole document.
+ *
+ * Only the current window of text and the current batch of sentences are kept in memory,
+ * whatever the size of the document.
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechStreamingExtractor {
+
+    /**
+     * Receives the entities of each labelled batch of sentences, in the order of the document.
+     */
+    public interface EntityHandler {
+        void onEntities(List<BiotechEntity> entities) throws Exception;
+    }
+
+    public static final int DEFAULT_MAX_WINDOW = 2000;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final BiotechParser parser;
+    private final int maxWindow;
+    private final int batchSize;
+
+    public BiotechStreamingExtractor(BiotechParser parser) {
+        this(parser, DEFAULT_MAX_WINDOW, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param parser    the parser used to label the sentences
+     * @param maxWindow maximum number of characters of a labelled sequence
+     * @param batchSize number of sentences labelled together
+     */
+    public BiotechStreamingExtractor(BiotechParser parser, int maxWindow, int batchSize) {
+        if (maxWindow < 1)
+            throw new IllegalArgumentException("The maximum window must be at least 1: " + maxWindow);
+        if (batchSize < 1)
+            throw new IllegalArgumentException("The batch size must be at least 1: " + batchSize);
+        this.parser = parser;
+        this.maxWindow = maxWindow;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Extract all the entities of the text of a reader. The reader is not closed.
+     *
+     * @return the number of characters read
+     */
+    public long extract(Reader reader, EntityHandler handler) throws IOException {
+        Batch batch = new Batch(handler);
+        StringBuilder window = new StringBuilder();
+        // offset of the window in the document
+        long windowOffset = 0;
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        boolean end = false;
+        while (!end) {
+            int read = reader.read(buffer, 0, Math.min(buffer.length, Math.max(1, maxWindow - window.length())));
+            if (read == -1)
+                end = true;
+            else
+                window.append(buffer, 0, read);
+
+            int from = 0;
+            while (true) {
+                from = skipSpaces(window, from);
+                if (from == window.length())
+                    break;
+                int boundary = sentenceEnd(window, from, end);
+                if ( (boundary == -1) && (end || (window.length() - from >= maxWindow)) )
+                    boundary = cut(window, from, end);
+                if (boundary == -1)
+                    break;
+                int last = boundary;
+                while (Character.isWhitespace(window.charAt(last - 1)))
+                    last--;
+                batch.add(window.substring(from, last), windowOffset + from);
+                from = boundary;
+            }
+            window.delete(0, from);
+            windowOffset += from;
+        }
+        batch.flush();
+        return windowOffset + window.length();
+    }
+
+    /**
+     * Extract all the entities of a text, with the streaming segmentation, and return them
+     * in one list.
+     */
+    public List<BiotechEntity> extract(String text) {
+        final List<BiotechEntity> entities = new ArrayList<BiotechEntity>();
+        try {
+            extract(new StringReader(text), new EntityHandler() {
+                public void onEntities(List<BiotechEntity> batchEntities) {
+                    entities.addAll(batchEntities);
+                }
+            });
+        } catch (IOException e) {
+            throw new GrobidException("An exception occured while reading the text.", e);
+        }
+        return entities;
+    }
+
+    private static int skipSpaces(CharSequence text, int from) {
+        while ( (from < text.length()) && Character.isWhitespace(text.charAt(from)) )
+            from++;
+        return from;
+    }
+
+    /**
+     * End (exclusive) of the sentence starting at from, -1 if the sentence can not be ended
+     * with the current text of the window.
+     */
+    private int sentenceEnd(CharSequence text, int from, boolean end) {
+        int limit = Math.min(text.length(), from + maxWindow);
+        for (int i = from; i < limit; i++) {
+            char c = text.charAt(i);
+            if ( (c == '.') || (c == '!') || (c == '?') ) {
+                if ( (i + 1 < text.length()) && !Character.isWhitespace(text.charAt(i + 1)) )
+                    continue;
+                int next = skipSpaces(text, i + 1);
+                if (next == text.length()) {
+                    // the beginning of the next sentence is not read yet
+                    if (end)
+                        return i + 1;
+                    return -1;
+                }
+                if (!Character.isLowerCase(text.charAt(next)))
+                    return i + 1;
+            } else if ( (c == '\n') && (i > from) ) {
+                int j = i + 1;
+                while ( (j < text.length()) && (text.charAt(j) == ' ' || text.charAt(j) == '\t' || text.charAt(j) == '\r') )
+                    j++;
+                if ( (j < text.length()) && (text.charAt(j) == '\n') )
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cut a sentence which does not end within the maximum window at its last white space,
+     * or at the window limit if it has no white space.
+     */
+    private int cut(CharSequence text, int from, boolean end) {
+        int limit = Math.min(text.length(), from + maxWindow);
+        if (end && (limit == text.length()))
+            return limit;
+        for (int i = Math.min(limit, text.length() - 1); i > from; i--) {
+            if (Character.isWhitespace(text.charAt(i)))
+                return i;
+        }
+        return limit;
+    }
+
+    /**
+     * Sentences waiting to be labelled, with their offset in the document.
+     */
+    private class Batch {
+        private final EntityHandler handler;
+        private final List<String> sentences = new ArrayList<String>(batchSize);
+        private final List<Long> offsets = new ArrayList<Long>(batchSize);
+
+        Batch(EntityHandler handler) {
+            this.handler = handler;
+        }
+
+        void add(String sentence, long offset) {
+            sentences.add(sentence);
+            offsets.add(offset);
+            if (sentences.size() >= batchSize)
+                flush();
+        }
+
+        void flush() {
+            if (sentences.isEmpty())
+                return;
+            List<BiotechEntity> entities = new ArrayList<BiotechEntity>();
+            try {
+                List<List<BiotechEntity>> results = parser.extractBiotechEntities(sentences);
+                for (int i = 0; i < results.size(); i++) {
+                    List<BiotechEntity> sentenceEntities = results.get(i);
+                    if (sentenceEntities == null)
+                        continue;
+                    int offset = toInt(offsets.get(i));
+                    for (BiotechEntity entity : sentenceEntities) {
+                        entity.setOffsetStart(entity.getOffsetStart() + offset);
+                        entity.setOffsetEnd(entity.getOffsetEnd() + offset);
+                        entities.add(entity);
+                    }
+                }
+                sentences.clear();
+                offsets.clear();
+                handler.onEntities(entities);
+            } catch (GrobidException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new GrobidException("An exception occured while running Grobid.", e);
+            }
+        }
+
+        private int toInt(long offset) {
+            if (offset > Integer.MAX_VALUE)
+                throw new GrobidException("Document too long for the entity offsets: " + offset);
+            return (int) offset;
+        }
+    }
+
+}
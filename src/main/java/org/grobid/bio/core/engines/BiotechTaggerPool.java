@@ -0,0 +1,334 @@
+package org.grobid.core.engines;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.pool.BasePoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.grobid.core.engines.tagging.GenericTagger;
+import org.grobid.core.exceptions.GrobidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of tagger instances for the biotech model.
+ *
+ * Each labelling borrows a tagger instance from the pool and returns it afterwards, so that
+ * the number of concurrent labellings, and the native memory they use, is bounded. At most a
+ * fixed number of instances are created. When all the instances are in use, a borrower waits
+ * until one is returned, or fails after the maximum waiting time.
+ *
+ * The instances of the default pool share one loaded model (see {@link SharedModelTaggerCreator}):
+ * with CRF++ each labelling creates its own native tagger from the shared model, with Wapiti
+ * the sequences are labelled by the shared model.
+ *
+ * The pool records the number of borrows, the time spent waiting for a tagger and the
+ * number of borrows which failed after the maximum waiting time.
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechTaggerPool implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechTaggerPool.class);
+
+    /**
+     * System property giving the size of the default pool, by default the number of processors.
+     */
+    public static final String SIZE_PROPERTY = "grobid.bio.tagger.pool.size";
+
+    /**
+     * System property giving the maximum waiting time in milliseconds for a tagger of the
+     * default pool.
+     */
+    public static final String MAX_WAIT_PROPERTY = "grobid.bio.tagger.pool.maxWait";
+
+    public static final long DEFAULT_MAX_WAIT_MS = 30000;
+
+    private static BiotechTaggerPool defaultPool = null;
+
+    /**
+     * Creation of the tagger instances of the pool.
+     */
+    public interface TaggerCreator {
+        GenericTagger createTagger();
+    }
+
+    /**
+     * Loading of a model, giving a tagger which can label concurrent sequences.
+     */
+    public interface ModelLoader {
+        GenericTagger loadModel();
+    }
+
+    private static final ModelLoader BIOTECH_MODEL_LOADER = new ModelLoader() {
+        public GenericTagger loadModel() {
+            return BiotechParser.createTagger();
+        }
+    };
+
+    /**
+     * Creation of tagger instances sharing one model, loaded with the first instance. The 
+     * instances delegate the labelling to the shared model and closing them has no effect, 
+     * the shared model being closed with the creator.
+     */
+    public static class SharedModelTaggerCreator implements TaggerCreator, Closeable {
+        private final ModelLoader loader;
+        private GenericTagger model = null;
+
+        public SharedModelTaggerCreator(ModelLoader loader) {
+            this.loader = loader;
+        }
+
+        public synchronized GenericTagger createTagger() {
+            if (model == null) {
+                long start = System.currentTimeMillis();
+                model = loader.loadModel();
+                LOGGER.info("Biotech model loaded in " + (System.currentTimeMillis() - start) + " ms");
+            }
+            return new SharedModelTagger(model);
+        }
+
+        public synchronized void close() throws IOException {
+            if (model != null) {
+                model.close();
+                model = null;
+            }
+        }
+    }
+
+    private static final class SharedModelTagger implements GenericTagger {
+        private final GenericTagger model;
+
+        SharedModelTagger(GenericTagger model) {
+            this.model = model;
+        }
+
+        public String label(Iterable<String> data) {
+            return model.label(data);
+        }
+
+        public String label(String data) {
+            return model.label(data);
+        }
+
+        public void close() {
+            // the shared model is closed with its creator
+        }
+    }
+
+    private final int size;
+    private final long maxWaitMillis;
+    private final TaggerCreator creator;
+    private final GenericObjectPool pool;
+
+    private final AtomicLong nbCreated = new AtomicLong(0);
+    private final AtomicLong nbBorrows = new AtomicLong(0);
+    private final AtomicLong nbTimeouts = new AtomicLong(0);
+    private final AtomicLong totalWaitNanos = new AtomicLong(0);
+    private final AtomicLong maxWaitNanos = new AtomicLong(0);
+
+    /**
+     * @param size maximum number of tagger instances
+     */
+    public BiotechTaggerPool(int size) {
+        this(size, DEFAULT_MAX_WAIT_MS, new SharedModelTaggerCreator(BIOTECH_MODEL_LOADER));
+    }
+
+    /**
+     * @param size          maximum number of tagger instances
+     * @param maxWaitMillis maximum time to wait for a tagger when they are all in use
+     * @param creator       creation of the tagger instances, closed with the pool if it is
+     *                      {@link Closeable}
+     */
+    public BiotechTaggerPool(int size, long maxWaitMillis, final TaggerCreator creator) {
+        if (size < 1)
+            throw new IllegalArgumentException("The size of the tagger pool must be at least 1: " + size);
+        if (maxWaitMillis <= 0)
+            throw new IllegalArgumentException("The maximum waiting time must be positive: " + maxWaitMillis);
+        this.size = size;
+        this.maxWaitMillis = maxWaitMillis;
+        this.creator = creator;
+        pool = new GenericObjectPool(new BasePoolableObjectFactory() {
+            @Override
+            public Object makeObject() {
+                long start = System.currentTimeMillis();
+                GenericTagger tagger = creator.createTagger();
+                nbCreated.incrementAndGet();
+                LOGGER.debug("Biotech tagger instance created in " + (System.currentTimeMillis() - start) + " ms");
+                return tagger;
+            }
+
+            @Override
+            public void destroyObject(Object tagger) throws Exception {
+                ((GenericTagger) tagger).close();
+            }
+        }, size, GenericObjectPool.WHEN_EXHAUSTED_BLOCK, maxWaitMillis, size);
+    }
+
+    /**
+     * The pool shared by default, created on first use with the size and maximum waiting time
+     * given by the system properties {@link #SIZE_PROPERTY} and {@link #MAX_WAIT_PROPERTY}.
+     * This pool is shared and should not be closed.
+     */
+    public static synchronized BiotechTaggerPool getInstance() {
+        if (defaultPool == null) {
+            int size = Integer.getInteger(SIZE_PROPERTY, Runtime.getRuntime().availableProcessors());
+            long maxWait = Long.getLong(MAX_WAIT_PROPERTY, DEFAULT_MAX_WAIT_MS);
+            defaultPool = new BiotechTaggerPool(size, maxWait, new SharedModelTaggerCreator(BIOTECH_MODEL_LOADER));
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Create tagger instances in advance, so that the first labellings do not wait for the
+     * loading of the model.
+     *
+     * @param nbInstances number of instances to be available, at most the size of the pool
+     */
+    public synchronized void warmUp(int nbInstances) {
+        long start = System.currentTimeMillis();
+        int target = Math.min(nbInstances, size);
+        int created = 0;
+        try {
+            while (pool.getNumIdle() + pool.getNumActive() < target) {
+                pool.addObject();
+                created++;
+            }
+        } catch (Exception e) {
+            throw new GrobidException("Cannot create a biotech tagger instance.", e);
+        }
+        if (created > 0) {
+            LOGGER.info(created + " biotech tagger instances created in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * Borrow a tagger, to be given back with {@link #release(GenericTagger)}, or with
+     * {@link #invalidate(GenericTagger)} if it cannot be used anymore.
+     *
+     * @throws GrobidException if no tagger is available after the maximum waiting time
+     */
+    public GenericTagger borrow() {
+        long start = System.nanoTime();
+        try {
+            GenericTagger tagger = (GenericTagger) pool.borrowObject();
+            recordWait(System.nanoTime() - start);
+            return tagger;
+        } catch (NoSuchElementException e) {
+            recordWait(System.nanoTime() - start);
+            nbTimeouts.incrementAndGet();
+            throw new GrobidException("No biotech tagger available after " + maxWaitMillis + " ms", e);
+        } catch (GrobidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("Cannot borrow a biotech tagger.", e);
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        nbBorrows.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max = maxWaitNanos.get();
+        while ( (waitNanos > max) && !maxWaitNanos.compareAndSet(max, waitNanos) ) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    /**
+     * Give back a borrowed tagger.
+     */
+    public void release(GenericTagger tagger) {
+        try {
+            pool.returnObject(tagger);
+        } catch (Exception e) {
+            LOGGER.warn("Cannot return a biotech tagger to the pool.", e);
+        }
+    }
+
+    /**
+     * Give back a borrowed tagger which cannot be used anymore (for instance after a failure
+     * of the labelling), the tagger being closed and replaced by a new instance when needed.
+     */
+    public void invalidate(GenericTagger tagger) {
+        try {
+            pool.invalidateObject(tagger);
+        } catch (Exception e) {
+            LOGGER.warn("Cannot invalidate a biotech tagger.", e);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Number of tagger instances currently borrowed.
+     */
+    public int getNumActive() {
+        return pool.getNumActive();
+    }
+
+    /**
+     * Number of tagger instances available without waiting.
+     */
+    public int getNumIdle() {
+        return pool.getNumIdle();
+    }
+
+    /**
+     * Number of tagger instances created so far, including the invalidated ones.
+     */
+    public long getNbCreated() {
+        return nbCreated.get();
+    }
+
+    /**
+     * Number of borrows, including the ones which failed after the maximum waiting time.
+     */
+    public long getNbBorrows() {
+        return nbBorrows.get();
+    }
+
+    /**
+     * Number of borrows which failed after the maximum waiting time.
+     */
+    public long getNbTimeouts() {
+        return nbTimeouts.get();
+    }
+
+    /**
+     * Mean time spent waiting for a tagger (including its creation if any), in milliseconds.
+     */
+    public double getMeanBorrowWaitMillis() {
+        long borrows = nbBorrows.get();
+        return (borrows == 0) ? 0 : totalWaitNanos.get() / (borrows * 1e6);
+    }
+
+    /**
+     * Longest time spent waiting for a tagger, in milliseconds.
+     */
+    public double getMaxBorrowWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * Close the available tagger instances, the borrowed ones being closed when released, and 
+     * the tagger creator if it is {@link Closeable}.
+     */
+    public void close() {
+        try {
+            pool.close();
+            if (creator instanceof Closeable)
+                ((Closeable) creator).close();
+        } catch (Exception e) {
+            LOGGER.warn("Cannot close the biotech tagger pool.", e);
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+package org.grobid.core.features;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.regex.Matcher;
+
+import org.grobid.core.utilities.TextUtilities;
+
+/**
+ * Streaming writer of the features used for biotech entity identification.
+ *
+ * The feature lines are appended directly into one reusable buffer per sequence, without
+ * creating a {@link FeaturesVectorBiotechEntity} nor intermediate strings for each token.
+ * The produced lines are identical to the ones given by
+ * {@link FeaturesVectorBiotechEntity#printVector()}.
+ *
+ * All the features except the label only depend on the token, they are computed once for
+ * the frequent tokens and then taken from a {@link TokenFeaturesCache}.
+ *
+ * A writer is not thread-safe, one instance should be used per thread.
+ *
+ * @author Patrice Lopez
+ */
+public class FeaturesWriterBiotechEntity {
+
+    /**
+     * Version of the feature set, to be incremented each time the features change, so that
+     * the cached training features are generated again.
+     */
+    public static final int FEATURE_SET_VERSION = 2;
+
+    // lowercasing char by char is only equivalent to String.toLowerCase() for ASCII
+    // and when the default locale has no special casing rules
+    private static final boolean simpleLowerCase;
+    static {
+        String language = Locale.getDefault().getLanguage();
+        simpleLowerCase = !(language.equals("tr") || language.equals("az") || language.equals("lt"));
+    }
+
+    private final StringBuilder buffer;
+
+    // cache of the token features, null if not used
+    private final TokenFeaturesCache tokenCache;
+
+    private final FeatureFactory featureFactory = FeatureFactory.getInstance();
+
+    // reused matcher for the punctuation test
+    private final Matcher punctMatcher = featureFactory.isPunct.matcher("");
+
+    public FeaturesWriterBiotechEntity() {
+        this(new StringBuilder());
+    }
+
+    public FeaturesWriterBiotechEntity(StringBuilder buffer) {
+        this(buffer, TokenFeaturesCache.getDefault());
+    }
+
+    /**
+     * @param buffer     the buffer where the feature lines are appended
+     * @param tokenCache the cache of the token features, null for no cache
+     */
+    public FeaturesWriterBiotechEntity(StringBuilder buffer, TokenFeaturesCache tokenCache) {
+        this.buffer = buffer;
+        this.tokenCache = tokenCache;
+    }
+
+    /**
+     * The buffer containing the feature lines written so far.
+     */
+    public StringBuilder getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Clear the buffer, keeping its capacity for the next sequence.
+     */
+    public void reset() {
+        buffer.setLength(0);
+    }
+
+    /**
+     * Append the end of a sequence, i.e. an empty line.
+     */
+    public void endSequence() {
+        buffer.append('\n');
+    }
+
+    /**
+     * Write the content of the buffer to the given writer and clear the buffer.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        if (buffer.length() > 0) {
+            writer.append(buffer);
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Append the feature line of a token.
+     *
+     * @param word  the token
+     * @param label the label of the token if known (training data), or null
+     */
+    public void addToken(String word, String label) {
+        if (word.length() == 0)
+            return;
+
+        if (tokenCache == null) {
+            appendTokenFeatures(word);
+        } else {
+            String features = tokenCache.get(word);
+            if (features != null) {
+                buffer.append(features);
+            } else {
+                int start = buffer.length();
+                appendTokenFeatures(word);
+                tokenCache.put(word, buffer.substring(start));
+            }
+        }
+
+        // label - for training data (1)
+        if (label != null)
+            buffer.append(' ').append(label).append('\n');
+        else
+            buffer.append(" 0\n");
+    }
+
+    /**
+     * Append all the features of a token except the label.
+     */
+    private void appendTokenFeatures(String word) {
+        int length = word.length();
+
+        // token string (1)
+        buffer.append(word);
+
+        // lowercase string
+        buffer.append(' ');
+        appendLowerCase(word);
+
+        // prefix (4)
+        for (int i = 1; i <= 4; i++) {
+            buffer.append(' ').append(word, 0, Math.min(i, length));
+        }
+
+        // suffix (4)
+        for (int i = 1; i <= 4; i++) {
+            buffer.append(' ').append(word, length - Math.min(i, length), length);
+        }
+
+        String digit;
+        if (featureFactory.test_number(word))
+            digit = "ALLDIGIT";
+        else if (featureFactory.test_digit(word))
+            digit = "CONTAINDIGIT";
+        else
+            digit = "NODIGIT";
+
+        // capitalisation (1)
+        buffer.append(' ');
+        if (digit.equals("ALLDIGIT"))
+            buffer.append("NOCAPS");
+        else if (featureFactory.test_all_capital(word))
+            buffer.append("ALLCAPS");
+        else if (featureFactory.test_first_capital(word))
+            buffer.append("INITCAP");
+        else
+            buffer.append("NOCAPS");
+
+        // digit information (1)
+        buffer.append(' ').append(digit);
+
+        // character information (1)
+        buffer.append(length == 1 ? " 1" : " 0");
+
+        // common name (1)
+        buffer.append(featureFactory.test_common(word) ? " 1" : " 0");
+
+        // punctuation information (1)
+        buffer.append(' ').append(punctType(word));
+
+        // shadow number
+        buffer.append(' ').append(TextUtilities.shadowNumbers(word));
+
+        // word shape
+        buffer.append(' ').append(TextUtilities.wordShape(word));
+
+        // word shape trimmed
+        buffer.append(' ').append(TextUtilities.wordShapeTrimmed(word));
+    }
+
+    private void appendLowerCase(String word) {
+        if (simpleLowerCase) {
+            int length = word.length();
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                if (word.charAt(i) >= 128) {
+                    ascii = false;
+                    break;
+                }
+            }
+            if (ascii) {
+                for (int i = 0; i < length; i++) {
+                    char c = word.charAt(i);
+                    if ( (c >= 'A') && (c <= 'Z') )
+                        c = (char) (c + ('a' - 'A'));
+                    buffer.append(c);
+                }
+                return;
+            }
+        }
+        buffer.append(word.toLowerCase());
+    }
+
+    private String punctType(String word) {
+        if (word.length() == 1) {
+            switch (word.charAt(0)) {
+                case '(':
+                case '[':
+                    return "OPENBRACKET";
+                case ')':
+                case ']':
+                    return "ENDBRACKET";
+                case '.':
+                    return "DOT";
+                case ',':
+                    return "COMMA";
+                case '-':
+                    return "HYPHEN";
+                case '"':
+                case '\'':
+                case '`':
+                    return "QUOTE";
+                default:
+                    break;
+            }
+        }
+        punctMatcher.reset(word);
+        if (punctMatcher.find())
+            return "PUNCT";
+        return "NOPUNCT";
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.grobid.core.features;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of the token dependent part of the feature lines, i.e. the whole line except
+ * the label, for the frequent tokens of the biomedical texts.
+ *
+ * The cache is safe for concurrent use and a default instance is shared by all the feature
+ * writers. Its size is given by the system property {@link #SIZE_PROPERTY} (number of tokens,
+ * 0 to disable the default cache).
+ *
+ * @author Patrice Lopez
+ */
+public class TokenFeaturesCache {
+
+    public static final String SIZE_PROPERTY = "grobid.bio.features.cache.size";
+
+    public static final int DEFAULT_SIZE = 20000;
+
+    private static final TokenFeaturesCache defaultCache = createDefault();
+
+    private final Cache<String, String> cache;
+
+    public TokenFeaturesCache(long maximumSize) {
+        cache = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build();
+    }
+
+    private static TokenFeaturesCache createDefault() {
+        long size = Long.getLong(SIZE_PROPERTY, DEFAULT_SIZE);
+        if (size <= 0)
+            return null;
+        return new TokenFeaturesCache(size);
+    }
+
+    /**
+     * The cache shared by default by the feature writers, null if disabled.
+     */
+    public static TokenFeaturesCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * The features of a token, without the label and the end of line, null if not cached.
+     */
+    public String get(String token) {
+        return cache.getIfPresent(token);
+    }
+
+    public void put(String token, String features) {
+        cache.put(token, features);
+    }
+
+    /**
+     * Hit, miss and eviction counts of the cache.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+}
@@ -7,17 +7,17 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
-import java.util.regex.PatternSyntaxException;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import org.grobid.core.analyzers.BioTokenizer;
 import org.grobid.core.exceptions.GrobidException;
 import org.grobid.core.exceptions.GrobidResourceException;
 import org.grobid.core.lang.Language;
@@ -28,23 +28,28 @@ import org.grobid.core.utilities.TextUtilities;
 import org.grobid.core.layout.LayoutToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.grobid.core.lexicon.FastMatcher;
 
 /**
  * Class for managing the biomedicine lexical resources.
  *
+ * The resources are loaded once into an immutable snapshot, safely published to all the 
+ * threads, so that the lexicon can be shared by concurrent parsers. The loading is done 
+ * lazily at the first look-up, or explicitly at service start with {@link #preload()}. 
+ *
  * @author Patrice Lopez
  */
 public class BioLexicon {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BioLexicon.class);
+
 	private static volatile BioLexicon instance;
 	
 	public static BioLexicon getInstance() {
         if (instance == null) {
             //double check idiom
-            // synchronized (instanceController) {
+            synchronized (BioLexicon.class) {
                 if (instance == null)
 					getNewInstance();
-            // }
+            }
         }
         return instance;
     }
@@ -58,20 +63,103 @@ public class BioLexicon {
 		instance = new BioLexicon();
 	}
 	
-	private FastMatcher bioPattern = null;
-	private Set<String> bioTokens = null;
+	/**
+	 * Immutable snapshot of the loaded biomedicine resources.
+	 */
+	private static final class BioResources {
+		final BioNameMatcher bioPattern;
+		final BioTokenDictionary bioTokens;
+		final String checksum;
+		
+		BioResources(BioNameMatcher bioPattern, BioTokenDictionary bioTokens, String checksum) {
+			this.bioPattern = bioPattern;
+			this.bioTokens = bioTokens;
+			this.checksum = checksum;
+		}
+	}
+	
+	/**
+	 * System property giving the location of the compiled vocabulary snapshot, by default 
+	 * in the Grobid temporary directory (see {@link BioLexiconSnapshot#defaultSnapshotFile(File)}).
+	 */
+	public static final String SNAPSHOT_PROPERTY = "grobid.bio.lexicon.snapshot";
+	
+	private volatile BioResources resources = null;
 	
 	private BioLexicon() {}
 	
-	public void initBio() {
-		File file = null;
-		InputStream ist = null;
-        InputStreamReader isr = null;
-        BufferedReader dis = null;
+	/**
+	 * Load the biomedicine resources if not already done. To be called at service start, so 
+	 * that the first request does not pay for the loading of the gazetteer. 
+	 */
+	public void preload() {
+		getResources();
+	}
+	
+	/**
+	 * Load the resources if needed and run a look-up, so that the matching code is initialized 
+	 * before the first request. 
+	 */
+	public void warmUp() {
+		List<LayoutToken> tokens = new ArrayList<LayoutToken>();
+		for(String token : WARM_UP_TOKENS) {
+			tokens.add(new LayoutToken(token));
+		}
+		tokenPositionsBioNames(tokens);
+		for(String token : WARM_UP_TOKENS) {
+			inBioDictionary(token);
+		}
+	}
+	
+	private static final String[] WARM_UP_TOKENS = 
+		{"Activation", " ", "of", " ", "the", " ", "NF", "-", "kappa", " ", "B", " ", "transcription", " ", 
+		"factor", " ", "in", " ", "human", " ", "T", " ", "cells", "."};
+	
+	public boolean isLoaded() {
+		return (resources != null);
+	}
+	
+	/**
+	 * Checksum of the loaded biomedicine vocabulary, which changes when the vocabulary is 
+	 * modified and reloaded. 
+	 */
+	public String getChecksum() {
+		return getResources().checksum;
+	}
+	
+	private BioResources getResources() {
+		BioResources localResources = resources;
+		if (localResources == null) {
+			synchronized (this) {
+				localResources = resources;
+				if (localResources == null) {
+					localResources = loadBio();
+					resources = localResources;
+				}
+			}
+		}
+		return localResources;
+	}
+	
+	/**
+	 * (Re)load the biomedicine resources. The new resources replace atomically the previous 
+	 * ones. 
+	 */
+	public synchronized void initBio() {
+		resources = loadBio();
+	}
+	
+	private BioResources loadBio() {
+		long start = System.currentTimeMillis();
+		Runtime runtime = Runtime.getRuntime();
+		long usedMemoryBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        BioNameMatcher bioPattern = null;
+        BioTokenDictionary bioTokens = null;
+        String checksum = null;
         try {			
-			bioTokens = new HashSet<String>();
 			String path = "src/main/resources/lexicon/genetics.en.txt";
-			file = new File(path);
+			File file = new File(path);
 	        if (!file.exists()) {
 	            throw new GrobidResourceException("Cannot add entries to bio dictionary, because file '" 
 					+ file.getAbsolutePath() + "' does not exists.");
@@ -81,71 +169,62 @@ public class BioLexicon {
 					+ file.getAbsolutePath() + "'.");
 	        }
 
-			bioPattern = new FastMatcher(file);
-            ist = getClass().getResourceAsStream(path);
-			if (ist == null) 
-				ist = new FileInputStream(file);
-            isr = new InputStreamReader(ist, "UTF8");
-            dis = new BufferedReader(isr);
+			// the compiled snapshot of the vocabulary avoids parsing the text file at each start
+			String snapshotPath = System.getProperty(SNAPSHOT_PROPERTY);
+			File snapshotFile = (snapshotPath != null) ? 
+				new File(snapshotPath) : BioLexiconSnapshot.defaultSnapshotFile(file);
+			BioLexiconSnapshot snapshot = BioLexiconSnapshot.get(file, snapshotFile);
 			
-            String l = null;
-            while ((l = dis.readLine()) != null) {
-            	if (l.length() == 0) continue;
-                StringTokenizer st = new StringTokenizer(l, TextUtilities.fullPunctuations);
-                while (st.hasMoreTokens()) {
-                 	String word = st.nextToken().trim().toLowerCase();
-                    if ((word.length() > 1) && !bioTokens.contains(word))
-                      	bioTokens.add(word);
-                }
-	        } 
+			bioPattern = snapshot.getMatcher();
+			bioTokens = snapshot.getTokens();
+			checksum = snapshot.getChecksum();
 		}	
-		catch (PatternSyntaxException e) {
-            throw new 
-			GrobidResourceException("Error when compiling lexicon matcher for biomedicine vocabulary.", e);
-        }
-		catch (FileNotFoundException e) {
-//	    	e.printStackTrace();
-            throw new GrobidException("An exception occured while running Grobid.", e);
-        } 
 		catch (IOException e) {
 //	    	e.printStackTrace();
             throw new GrobidException("An exception occured while running Grobid.", e);
         } 
-		finally {
-            try {
-                if (ist != null)
-                    ist.close();
-                if (isr != null)
-                    isr.close();
-                if (dis != null)
-                    dis.close();
-            } catch (Exception e) {
-                throw new GrobidResourceException("Cannot close all streams.", e);
-            }
-        }
+		
+		// the memory footprint is only an estimate, other threads might allocate meanwhile
+		long usedMemoryAfter = runtime.totalMemory() - runtime.freeMemory();
+		LOGGER.info("Biomedicine lexicon loaded in " + (System.currentTimeMillis() - start) + " ms, " 
+			+ bioTokens.size() + " tokens, " + bioPattern.getNbStates() + " matcher states, approx. " 
+			+ (Math.max(0, usedMemoryAfter - usedMemoryBefore) / (1024 * 1024)) + " MB");
+		LOGGER.info("Biomedicine token dictionary: " + (bioTokens.memoryFootprint() / 1024) 
+			+ " KB (approx. " + (bioTokens.hashSetMemoryFootprint() / 1024) + " KB as a HashSet)");
+		return new BioResources(bioPattern, bioTokens, checksum);
     }
 	
 	/**
      * Soft look-up in biomedicine vocabulary gazetteer
      */
     public List<OffsetPosition> tokenPositionsBioNames(String s) {
-        if (bioPattern == null) {
-            initBio();
-        }
-        List<OffsetPosition> results = bioPattern.matchToken(s);
+        return tokenPositionsBioNames(s, BioTokenizer.tokenize(s));
+    }
+
+	/**
+     * Soft look-up in biomedicine vocabulary gazetteer, on a text tokenized with 
+     * {@link BioTokenizer}, the positions being indices in the given tokens
+     */
+    public List<OffsetPosition> tokenPositionsBioNames(CharSequence text, BioTokenizer.Tokens tokens) {
+        List<OffsetPosition> results = getResources().bioPattern.match(text, tokens);
         return results;
     }
 
 	public List<OffsetPosition> tokenPositionsBioNames(List<LayoutToken> s) {
-        if (bioPattern == null) {
-            initBio();
-        }
-        List<OffsetPosition> results = bioPattern.matchLayoutToken(s);
+        List<OffsetPosition> results = getResources().bioPattern.matchLayoutToken(s);
         return results;
     }
     
-	public boolean inBioDictionary(String s) {
-		return bioTokens.contains(s);
+	public boolean inBioDictionary(CharSequence s) {
+		return getResources().bioTokens.contains(s);
+	}
+
+	/**
+	 * Look-up of the slice [start, end) of a text in the biomedicine token dictionary, without 
+	 * creating a String. 
+	 */
+	public boolean inBioDictionary(CharSequence s, int start, int end) {
+		return getResources().bioTokens.contains(s, start, end);
 	}
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,300 @@
+package org.grobid.core.lexicon;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.exceptions.GrobidResourceException;
+import org.grobid.core.utilities.GrobidProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Compiled binary snapshot of the biomedicine gazetteer, to avoid parsing the text
+ * vocabulary file at each start.
+ *
+ * The snapshot contains the dictionary of the lowercased tokens and the compiled gazetteer matcher
+ * automaton (see {@link BioNameMatcher}), with a
+ * format version and the checksum of the source vocabulary file: a snapshot is ignored and
+ * rebuilt when the format changes or when the source file is modified. The snapshot file is
+ * read in one pass into the arrays of the dictionary and of the automaton.
+ *
+ * Snapshots can be compiled at build time with the main method of this class, otherwise
+ * they are created at first run in the Grobid temporary directory, so that no generated file
+ * is written in the source tree.
+ *
+ * @author Patrice Lopez
+ */
+public class BioLexiconSnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BioLexiconSnapshot.class);
+
+    // "GBLX"
+    private static final int MAGIC = 0x47424C58;
+
+    /**
+     * To be incremented each time the content or the layout of the snapshot changes.
+     */
+    public static final int FORMAT_VERSION = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String checksum;
+    private final BioTokenDictionary tokens;
+    private final BioNameMatcher matcher;
+
+    private BioLexiconSnapshot(String checksum, BioTokenDictionary tokens, BioNameMatcher matcher) {
+        this.checksum = checksum;
+        this.tokens = tokens;
+        this.matcher = matcher;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * The dictionary of the lowercased tokens of the vocabulary, of length greater than 1.
+     */
+    public BioTokenDictionary getTokens() {
+        return tokens;
+    }
+
+    /**
+     * The matcher of the gazetteer terms.
+     */
+    public BioNameMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Default location of the snapshot of a vocabulary file: in the Grobid temporary directory,
+     * or in the system temporary directory if Grobid is not initialised.
+     */
+    public static File defaultSnapshotFile(File source) {
+        File directory = null;
+        try {
+            directory = GrobidProperties.getTempPath();
+        } catch (RuntimeException e) {
+            // the Grobid properties are not initialised
+        }
+        if (directory == null)
+            directory = new File(System.getProperty("java.io.tmpdir"));
+        return new File(directory, source.getName() + ".snapshot");
+    }
+
+    /**
+     * Checksum of a vocabulary file.
+     */
+    public static String checksum(File source) throws IOException {
+        return Files.asByteSource(source).hash(Hashing.sha1()).toString();
+    }
+
+    /**
+     * Get the snapshot of a vocabulary file: the existing snapshot if it is valid, otherwise
+     * a new snapshot compiled from the vocabulary file, which is saved if possible.
+     */
+    public static BioLexiconSnapshot get(File source, File snapshotFile) throws IOException {
+        String checksum = checksum(source);
+        BioLexiconSnapshot snapshot = null;
+        if (snapshotFile.exists()) {
+            snapshot = load(snapshotFile, checksum);
+            if (snapshot == null)
+                LOGGER.info("Biomedicine lexicon snapshot " + snapshotFile.getPath() + " is outdated, rebuilding it.");
+        }
+        if (snapshot == null) {
+            snapshot = compile(source, checksum);
+            try {
+                snapshot.save(snapshotFile);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot save the biomedicine lexicon snapshot " + snapshotFile.getPath(), e);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Parse a vocabulary file, one term per line.
+     */
+    public static BioLexiconSnapshot compile(File source, String checksum) throws IOException {
+        Set<String> tokens = new HashSet<String>();
+        List<String> terms = new ArrayList<String>();
+        BioTokenizer.Tokens lineTokens = new BioTokenizer.Tokens();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), UTF_8));
+        try {
+            String l = null;
+            while ((l = reader.readLine()) != null) {
+                if (l.length() == 0) continue;
+                terms.add(l);
+                BioTokenizer.tokenize(l, lineTokens);
+                for (int i = 0; i < lineTokens.size(); i++) {
+                    if (lineTokens.end(i) - lineTokens.start(i) > 1)
+                        tokens.add(lineTokens.text(i).toLowerCase());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        List<String> sortedTokens = new ArrayList<String>(tokens);
+        Collections.sort(sortedTokens);
+        return new BioLexiconSnapshot(checksum, new BioTokenDictionary(sortedTokens), BioNameMatcher.build(terms));
+    }
+
+    /**
+     * Load a snapshot file, read at once in a buffer from which the arrays are copied.
+     *
+     * @return the snapshot, or null if the snapshot has not the expected format version or
+     * checksum
+     */
+    public static BioLexiconSnapshot load(File snapshotFile, String expectedChecksum) throws IOException {
+        FileInputStream in = new FileInputStream(snapshotFile);
+        try {
+            FileChannel channel = in.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                return null;
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while ( buffer.hasRemaining() && (channel.read(buffer) != -1) ) {
+                // until the buffer is full
+            }
+            buffer.flip();
+            if ( (buffer.remaining() < 8) || (buffer.getInt() != MAGIC) || (buffer.getInt() != FORMAT_VERSION) )
+                return null;
+            String checksum = readString(buffer);
+            if (!checksum.equals(expectedChecksum))
+                return null;
+
+            BioTokenDictionary tokens = readDictionary(buffer);
+            BioTokenDictionary vocabulary = readDictionary(buffer);
+            BioNameMatcher matcher = new BioNameMatcher(vocabulary,
+                readInts(buffer),
+                readInts(buffer),
+                readInts(buffer),
+                readInts(buffer),
+                readInts(buffer),
+                readInts(buffer));
+            if ( (matcher.getEdgeStart().length != matcher.getNbStates() + 1) 
+                || (matcher.getEdgeLabel().length != matcher.getEdgeTarget().length) )
+                throw new IllegalStateException("Inconsistent matcher automaton");
+            return new BioLexiconSnapshot(checksum, tokens, matcher);
+        } catch (RuntimeException e) {
+            // truncated or corrupted snapshot
+            LOGGER.warn("Invalid biomedicine lexicon snapshot " + snapshotFile.getPath(), e);
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Save the snapshot, the file being replaced atomically when possible.
+     */
+    public void save(File snapshotFile) throws IOException {
+        File tmpFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, checksum);
+
+            writeDictionary(out, tokens);
+
+            // matcher vocabulary, then the automaton arrays
+            writeDictionary(out, matcher.getVocabulary());
+            writeInts(out, matcher.getEdgeStart());
+            writeInts(out, matcher.getEdgeLabel());
+            writeInts(out, matcher.getEdgeTarget());
+            writeInts(out, matcher.getFail());
+            writeInts(out, matcher.getTermLength());
+            writeInts(out, matcher.getOutputLink());
+        } finally {
+            out.close();
+        }
+        if (snapshotFile.exists() && !snapshotFile.delete())
+            throw new IOException("Cannot replace " + snapshotFile.getPath());
+        if (!tmpFile.renameTo(snapshotFile))
+            throw new IOException("Cannot rename " + tmpFile.getPath() + " to " + snapshotFile.getPath());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeDictionary(DataOutputStream out, BioTokenDictionary dictionary) throws IOException {
+        char[] chars = dictionary.getChars();
+        out.writeInt(chars.length);
+        for (char c : chars) {
+            out.writeChar(c);
+        }
+        writeInts(out, dictionary.getOffsets());
+        writeInts(out, dictionary.getTable());
+    }
+
+    private static BioTokenDictionary readDictionary(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        char[] chars = new char[length];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + 2 * length);
+        return new BioTokenDictionary(chars, readInts(buffer), readInts(buffer));
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Build-time compilation of a vocabulary file into a snapshot.
+     *
+     * @param args the vocabulary file and optionally the snapshot file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: BioLexiconSnapshot vocabulary_file [snapshot_file]");
+            return;
+        }
+        File source = new File(args[0]);
+        if (!source.exists()) {
+            throw new GrobidResourceException("The vocabulary file '" + source.getAbsolutePath() + "' does not exist.");
+        }
+        File snapshotFile = (args.length > 1) ? new File(args[1]) : defaultSnapshotFile(source);
+        BioLexiconSnapshot snapshot = compile(source, checksum(source));
+        snapshot.save(snapshotFile);
+        System.out.println(snapshot.getTokens().size() + " tokens written to " + snapshotFile.getPath());
+    }
+
+}
@@ -0,0 +1,362 @@
+package org.grobid.core.lexicon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.utilities.OffsetPosition;
+
+/**
+ * Multi-pattern matcher for the biomedicine gazetteer, based on an Aho-Corasick automaton
+ * over normalised token identifiers.
+ *
+ * The terms are tokenized as the texts with {@link BioTokenizer} (white spaces are ignored) and
+ * lowercased, each distinct token getting an identifier. All the occurrences of all the terms
+ * in a sequence of tokens are then found in one linear pass over the tokens, whatever the
+ * number of terms. The returned positions are the leftmost-longest non-overlapping matches,
+ * as token indices in the input sequence, white space tokens included, end index inclusive,
+ * as with {@link FastMatcher}.
+ *
+ * The positions differ from the ones of {@link FastMatcher#matchLayoutToken(List)} in two ways:
+ * <ul>
+ * <li>FastMatcher returns all the occurrences of all the terms, including nested and
+ * overlapping ones, while only the leftmost-longest ones are returned here, so that a token
+ * belongs to at most one gazetteer term;</li>
+ * <li>FastMatcher ignores the punctuation marks of the terms and of the texts, while they are
+ * tokens to be matched here, so that "NF-kappa B" does not match "NF kappa B" and "kappa B"
+ * does not match "kappa-B".</li>
+ * </ul>
+ * Otherwise the positions are the same, which is checked on the GENIA evaluation sentences
+ * by TestBioNameMatcher.
+ *
+ * The automaton is immutable once built and can be shared by concurrent threads.
+ *
+ * @author Patrice Lopez
+ */
+public class BioNameMatcher {
+
+    private static final int ROOT = 0;
+
+    // normalised tokens, the index of a token being its identifier
+    private final BioTokenDictionary vocabulary;
+
+    // transitions of a state s are at [edgeStart[s], edgeStart[s+1]) in edgeLabel/edgeTarget,
+    // sorted by label
+    private final int[] edgeStart;
+    private final int[] edgeLabel;
+    private final int[] edgeTarget;
+
+    // failure link of each state
+    private final int[] fail;
+    // number of tokens of the term ending at a state, 0 if no term ends at this state
+    private final int[] termLength;
+    // nearest state on the failure chain where a term ends, -1 if none
+    private final int[] outputLink;
+
+    BioNameMatcher(BioTokenDictionary vocabulary,
+                   int[] edgeStart,
+                   int[] edgeLabel,
+                   int[] edgeTarget,
+                   int[] fail,
+                   int[] termLength,
+                   int[] outputLink) {
+        this.vocabulary = vocabulary;
+        this.edgeStart = edgeStart;
+        this.edgeLabel = edgeLabel;
+        this.edgeTarget = edgeTarget;
+        this.fail = fail;
+        this.termLength = termLength;
+        this.outputLink = outputLink;
+    }
+
+    /**
+     * Build the automaton for a list of terms.
+     */
+    public static BioNameMatcher build(Iterable<String> terms) {
+        Map<String, Integer> vocabulary = new HashMap<String, Integer>();
+
+        // trie construction, with temporary maps for the transitions
+        List<Map<Integer, Integer>> transitions = new ArrayList<Map<Integer, Integer>>();
+        List<Integer> lengths = new ArrayList<Integer>();
+        transitions.add(new HashMap<Integer, Integer>());
+        lengths.add(0);
+        for (String term : terms) {
+            List<String> tokens = tokenizeTerm(term);
+            if (tokens.isEmpty())
+                continue;
+            int state = ROOT;
+            for (String token : tokens) {
+                Integer id = vocabulary.get(token);
+                if (id == null) {
+                    id = vocabulary.size();
+                    vocabulary.put(token, id);
+                }
+                Integer next = transitions.get(state).get(id);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.add(new HashMap<Integer, Integer>());
+                    lengths.add(0);
+                    transitions.get(state).put(id, next);
+                }
+                state = next;
+            }
+            lengths.set(state, tokens.size());
+        }
+
+        // freeze the transitions into sorted arrays
+        int nbStates = transitions.size();
+        int nbEdges = 0;
+        for (Map<Integer, Integer> edges : transitions) {
+            nbEdges += edges.size();
+        }
+        int[] edgeStart = new int[nbStates + 1];
+        int[] edgeLabel = new int[nbEdges];
+        int[] edgeTarget = new int[nbEdges];
+        int[] termLength = new int[nbStates];
+        int pos = 0;
+        for (int state = 0; state < nbStates; state++) {
+            edgeStart[state] = pos;
+            Map<Integer, Integer> edges = transitions.get(state);
+            int[] labels = new int[edges.size()];
+            int k = 0;
+            for (Integer label : edges.keySet()) {
+                labels[k++] = label;
+            }
+            Arrays.sort(labels);
+            for (int label : labels) {
+                edgeLabel[pos] = label;
+                edgeTarget[pos] = edges.get(label);
+                pos++;
+            }
+            termLength[state] = lengths.get(state);
+        }
+        edgeStart[nbStates] = pos;
+        transitions = null;
+
+        // failure and output links, breadth-first
+        int[] fail = new int[nbStates];
+        int[] outputLink = new int[nbStates];
+        Arrays.fill(outputLink, -1);
+        int[] queue = new int[nbStates];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            fail[edgeTarget[e]] = ROOT;
+            queue[tail++] = edgeTarget[e];
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                int child = edgeTarget[e];
+                int label = edgeLabel[e];
+                int f = fail[state];
+                int next = transition(edgeStart, edgeLabel, edgeTarget, f, label);
+                while ( (next == -1) && (f != ROOT) ) {
+                    f = fail[f];
+                    next = transition(edgeStart, edgeLabel, edgeTarget, f, label);
+                }
+                fail[child] = (next == -1) ? ROOT : next;
+                int failState = fail[child];
+                outputLink[child] = (termLength[failState] > 0) ? failState : outputLink[failState];
+                queue[tail++] = child;
+            }
+        }
+
+        String[] vocabularyTokens = new String[vocabulary.size()];
+        for (Map.Entry<String, Integer> entry : vocabulary.entrySet()) {
+            vocabularyTokens[entry.getValue()] = entry.getKey();
+        }
+
+        return new BioNameMatcher(new BioTokenDictionary(Arrays.asList(vocabularyTokens)), 
+            edgeStart, edgeLabel, edgeTarget, fail, termLength, outputLink);
+    }
+
+    /**
+     * Tokenization and normalisation of a gazetteer term.
+     */
+    static List<String> tokenizeTerm(String term) {
+        List<String> tokens = new ArrayList<String>();
+        for (String token : BioTokenizer.tokenizeToStrings(term)) {
+            tokens.add(token.toLowerCase());
+        }
+        return tokens;
+    }
+
+    private static int transition(int[] edgeStart, int[] edgeLabel, int[] edgeTarget, int state, int label) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = edgeLabel[middle];
+            if (value < label)
+                low = middle + 1;
+            else if (value > label)
+                high = middle - 1;
+            else
+                return edgeTarget[middle];
+        }
+        return -1;
+    }
+
+    public int getNbStates() {
+        return fail.length;
+    }
+
+    public int getVocabularySize() {
+        return vocabulary.size();
+    }
+
+    /**
+     * Identifier of the normalised token, -1 if the token does not appear in any term.
+     */
+    int tokenId(String token) {
+        // trim and lowercase without creating a new string
+        int start = 0;
+        int end = token.length();
+        while ( (start < end) && (token.charAt(start) <= ' ') ) 
+            start++;
+        while ( (end > start) && (token.charAt(end - 1) <= ' ') ) 
+            end--;
+        return vocabulary.indexOfIgnoreCase(token, start, end);
+    }
+
+    /**
+     * Find the positions of the gazetteer terms in a sequence of layout tokens.
+     */
+    public List<OffsetPosition> matchLayoutToken(List<LayoutToken> tokens) {
+        int size = tokens.size();
+        int[] ids = new int[size];
+        int[] indices = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            String text = tokens.get(i).getText();
+            if ( (text == null) || (text.trim().length() == 0) )
+                continue;
+            ids[n] = tokenId(text);
+            indices[n] = i;
+            n++;
+        }
+        return match(ids, indices, n);
+    }
+
+    /**
+     * Find the positions of the gazetteer terms in a tokenized text, directly on the token
+     * offsets. The returned positions are indices in the given tokens.
+     */
+    public List<OffsetPosition> match(CharSequence text, BioTokenizer.Tokens tokens) {
+        int size = tokens.size();
+        int[] ids = new int[size];
+        int[] indices = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (tokens.isSpace(i))
+                continue;
+            ids[n] = vocabulary.indexOfIgnoreCase(text, tokens.start(i), tokens.end(i));
+            indices[n] = i;
+            n++;
+        }
+        return match(ids, indices, n);
+    }
+
+    /**
+     * Find the positions of the gazetteer terms in a sequence of token identifiers.
+     *
+     * @param ids     the token identifiers, -1 for unknown tokens
+     * @param indices the index to be returned in the positions for each token
+     * @param n       the number of tokens
+     */
+    List<OffsetPosition> match(int[] ids, int[] indices, int n) {
+        List<OffsetPosition> results = new ArrayList<OffsetPosition>();
+        if (n == 0)
+            return results;
+
+        int[] longestEnd = new int[n];
+        if (!longestEnds(ids, n, longestEnd))
+            return results;
+
+        // leftmost-longest non-overlapping selection
+        int i = 0;
+        while (i < n) {
+            if (longestEnd[i] != -1) {
+                OffsetPosition position = new OffsetPosition();
+                position.start = indices[i];
+                position.end = indices[longestEnd[i]];
+                results.add(position);
+                i = longestEnd[i] + 1;
+            } else {
+                i++;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Run the automaton over a sequence of token identifiers, giving for each starting token
+     * the ending token of the longest term, -1 if none.
+     *
+     * @return false if no term was found
+     */
+    private boolean longestEnds(int[] ids, int n, int[] longestEnd) {
+        Arrays.fill(longestEnd, 0, n, -1);
+        boolean found = false;
+        int state = ROOT;
+        for (int j = 0; j < n; j++) {
+            int id = ids[j];
+            if (id == -1) {
+                state = ROOT;
+                continue;
+            }
+            int next = transition(edgeStart, edgeLabel, edgeTarget, state, id);
+            while ( (next == -1) && (state != ROOT) ) {
+                state = fail[state];
+                next = transition(edgeStart, edgeLabel, edgeTarget, state, id);
+            }
+            state = (next == -1) ? ROOT : next;
+
+            int output = (termLength[state] > 0) ? state : outputLink[state];
+            while (output != -1) {
+                found = true;
+                int start = j - termLength[output] + 1;
+                if (longestEnd[start] < j)
+                    longestEnd[start] = j;
+                output = outputLink[output];
+            }
+        }
+        return found;
+    }
+
+    // accessors for the serialization of the automaton
+
+    BioTokenDictionary getVocabulary() {
+        return vocabulary;
+    }
+
+    int[] getEdgeStart() {
+        return edgeStart;
+    }
+
+    int[] getEdgeLabel() {
+        return edgeLabel;
+    }
+
+    int[] getEdgeTarget() {
+        return edgeTarget;
+    }
+
+    int[] getFail() {
+        return fail;
+    }
+
+    int[] getTermLength() {
+        return termLength;
+    }
+
+    int[] getOutputLink() {
+        return outputLink;
+    }
+
+}
@@ -0,0 +1,188 @@
+package org.grobid.core.lexicon;
+
+import java.util.List;
+
+/**
+ * Compact read-only dictionary of tokens, used for the biomedicine vocabulary.
+ *
+ * All the tokens are stored in one char array, with an open-addressing hash table of token
+ * indices. A look-up can be done on any slice of a {@link CharSequence}, without creating a
+ * String, and the memory cost per entry is a few bytes in addition to the characters, instead
+ * of a String object and a hash set entry.
+ *
+ * Each token gets as identifier its index in the list given at construction. The dictionary
+ * is immutable and can be shared by concurrent threads.
+ *
+ * @author Patrice Lopez
+ */
+public class BioTokenDictionary {
+
+    // all the token characters, token i being at [offsets[i], offsets[i+1])
+    private final char[] chars;
+    private final int[] offsets;
+    // token index + 1 for each slot, 0 for an empty slot
+    private final int[] table;
+    private final int mask;
+
+    /**
+     * @param tokens distinct tokens, the identifier of a token being its index in the list
+     */
+    public BioTokenDictionary(List<String> tokens) {
+        int nbChars = 0;
+        for (String token : tokens) {
+            nbChars += token.length();
+        }
+        chars = new char[nbChars];
+        offsets = new int[tokens.size() + 1];
+        int capacity = 16;
+        while (capacity < 2 * tokens.size()) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        mask = capacity - 1;
+
+        int pos = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (indexOf(token, 0, token.length()) != -1)
+                throw new IllegalArgumentException("Duplicated token in dictionary: " + token);
+            token.getChars(0, token.length(), chars, pos);
+            offsets[i] = pos;
+            pos += token.length();
+            offsets[i + 1] = pos;
+
+            int slot = hash(token, 0, token.length(), false) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    BioTokenDictionary(char[] chars, int[] offsets, int[] table) {
+        if ( (offsets.length == 0) || (Integer.bitCount(table.length) != 1)
+            || (offsets[offsets.length - 1] != chars.length) )
+            throw new IllegalArgumentException("Inconsistent token dictionary");
+        int nbEntries = 0;
+        for (int entry : table) {
+            if ( (entry < 0) || (entry > offsets.length - 1) )
+                throw new IllegalArgumentException("Inconsistent token dictionary");
+            if (entry != 0)
+                nbEntries++;
+        }
+        if ( (nbEntries != offsets.length - 1) || (nbEntries == table.length) )
+            throw new IllegalArgumentException("Inconsistent token dictionary");
+        this.chars = chars;
+        this.offsets = offsets;
+        this.table = table;
+        this.mask = table.length - 1;
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * The token with the given identifier.
+     */
+    public String get(int index) {
+        return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+
+    public boolean contains(CharSequence s) {
+        return indexOf(s, 0, s.length()) != -1;
+    }
+
+    public boolean contains(CharSequence s, int start, int end) {
+        return indexOf(s, start, end) != -1;
+    }
+
+    /**
+     * Identifier of the token equal to the slice [start, end) of s, -1 if not present.
+     */
+    public int indexOf(CharSequence s, int start, int end) {
+        return lookup(s, start, end, false);
+    }
+
+    /**
+     * Identifier of the token equal to the lowercased slice [start, end) of s, -1 if not
+     * present. The lowercasing is done char by char, which is equivalent to
+     * {@link String#toLowerCase()} except for a few context or locale dependent characters.
+     */
+    public int indexOfIgnoreCase(CharSequence s, int start, int end) {
+        return lookup(s, start, end, true);
+    }
+
+    private int lookup(CharSequence s, int start, int end, boolean lowerCase) {
+        int length = end - start;
+        int slot = hash(s, start, end, lowerCase) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int index = entry - 1;
+            int offset = offsets[index];
+            if (offsets[index + 1] - offset == length) {
+                int i = 0;
+                while (i < length) {
+                    char c = s.charAt(start + i);
+                    if (lowerCase)
+                        c = Character.toLowerCase(c);
+                    if (c != chars[offset + i])
+                        break;
+                    i++;
+                }
+                if (i == length)
+                    return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(CharSequence s, int start, int end, boolean lowerCase) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (lowerCase)
+                c = Character.toLowerCase(c);
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Approximate memory used by the dictionary, in bytes.
+     */
+    public long memoryFootprint() {
+        return 3 * 16 + 2L * chars.length + 4L * offsets.length + 4L * table.length;
+    }
+
+    /**
+     * Estimate of the memory that the same tokens would use in a HashSet of Strings, in bytes,
+     * for comparison (compressed references, String with its own char array, one hash map node
+     * per entry and a load factor of 0.75).
+     */
+    public long hashSetMemoryFootprint() {
+        long total = 48;
+        for (int i = 0; i < size(); i++) {
+            int length = offsets[i + 1] - offsets[i];
+            // String object + char array aligned on 8 bytes + node + table slot
+            total += 24 + (((16 + 2 * length) + 7) / 8) * 8 + 32 + 6;
+        }
+        return total;
+    }
+
+    // accessors for the serialization of the dictionary
+
+    char[] getChars() {
+        return chars;
+    }
+
+    int[] getOffsets() {
+        return offsets;
+    }
+
+    int[] getTable() {
+        return table;
+    }
+
+}
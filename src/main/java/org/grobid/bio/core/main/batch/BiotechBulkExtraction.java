@@ -0,0 +1,416 @@
+package org.grobid.core.main.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.engines.BiotechExtractionService;
+import org.grobid.core.engines.BiotechPipelineExecutor;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.main.batch.BulkDocumentReader.BulkDocument;
+import org.grobid.core.main.batch.BulkDocumentReader.Format;
+import org.grobid.core.metrics.BiotechMetrics.Stage;
+import org.grobid.core.utilities.GrobidProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Command line extraction of the biotech entities of a large corpus file, one document per
+ * line (see {@link BulkDocumentReader}), the entities of each document being written as a JSON
+ * line with their type and offsets (see {@link BulkResultWriter}).
+ *
+ * The documents are processed in parallel by a {@link BiotechExtractionService}, with by
+ * default one worker per core, and the results are written in the order of the input, so that
+ * the output does not depend on the number of workers. The entities are extracted and written
+ * as {@link org.grobid.core.data.BiotechEntitySpans}, without an object per entity. A checkpoint is recorded every given
+ * number of documents, and an interrupted run can be resumed from its last checkpoint. The
+ * progress and the throughput are logged periodically. A document which cannot be read or whose
+ * extraction fails is written with its error and the run goes on. With -pipeline, the documents
+ * go through a {@link BiotechPipelineExecutor} with the given numbers of feature generation,
+ * labelling and decoding threads instead.
+ *
+ * <pre>
+ * java org.grobid.core.main.batch.BiotechBulkExtraction -in abstracts.jsonl.gz -out entities.jsonl.gz
+ *     [-format jsonl|tsv|txt] [-textField text] [-idField id] [-workers n | -pipeline f,l,d]
+ *     [-checkpoint n] [-resume] [-gH grobid-home]
+ * </pre>
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechBulkExtraction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechBulkExtraction.class);
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 10000;
+    public static final long DEFAULT_PROGRESS_INTERVAL_MS = 10000;
+
+    // capacity of the queues between the stages of the pipelined extraction
+    private static final int PIPELINE_QUEUE_CAPACITY = 64;
+
+    private final File input;
+    private final File output;
+    private Format format = null;
+    private String textField = "text";
+    private String idField = "id";
+    private int nbWorkers = Runtime.getRuntime().availableProcessors();
+    // threads of the stages of the pipelined extraction, null for the worker extraction
+    private int[] pipelineThreads = null;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private long progressIntervalMillis = DEFAULT_PROGRESS_INTERVAL_MS;
+    private boolean resume = false;
+
+    public BiotechBulkExtraction(File input, File output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * Format of the input lines, by default given by the extension of the input file
+     * (see {@link Format#fromFileName(String)}).
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Fields of the text and of the identifier of the documents in JSONL.
+     */
+    public void setFields(String textField, String idField) {
+        this.textField = textField;
+        this.idField = idField;
+    }
+
+    public void setNbWorkers(int nbWorkers) {
+        this.nbWorkers = nbWorkers;
+    }
+
+    /**
+     * Use a {@link BiotechPipelineExecutor} with the given numbers of threads for the feature
+     * generation, the labelling and the decoding, instead of workers running all the stages of
+     * a document.
+     */
+    public void setPipeline(int nbFeaturizers, int nbTaggers, int nbDecoders) {
+        this.pipelineThreads = new int[] {nbFeaturizers, nbTaggers, nbDecoders};
+    }
+
+    /**
+     * Number of documents between two checkpoints.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public void setProgressIntervalMillis(long progressIntervalMillis) {
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * Continue from the last checkpoint of the output, if any.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Counters of a run.
+     */
+    public static class Summary {
+        long nbDocuments = 0;
+        long nbSkipped = 0;
+        long nbErrors = 0;
+        long nbEntities = 0;
+        long nbCharacters = 0;
+        long nanos = 0;
+
+        /**
+         * Documents processed by this run, without the documents skipped when resuming.
+         */
+        public long getNbDocuments() {
+            return nbDocuments;
+        }
+
+        /**
+         * Documents skipped because already processed by a previous run.
+         */
+        public long getNbSkipped() {
+            return nbSkipped;
+        }
+
+        /**
+         * Documents which could not be read or whose extraction failed.
+         */
+        public long getNbErrors() {
+            return nbErrors;
+        }
+
+        public long getNbEntities() {
+            return nbEntities;
+        }
+
+        public long getNbCharacters() {
+            return nbCharacters;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        public double getDocumentsPerSecond() {
+            return (nanos == 0) ? 0 : nbDocuments / getSeconds();
+        }
+
+        public double getCharactersPerSecond() {
+            return (nanos == 0) ? 0 : nbCharacters / getSeconds();
+        }
+
+        public String toString() {
+            return String.format(Locale.US, "%d documents (%d skipped, %d errors), %d entities, %d characters " +
+                "in %.1f s: %.1f documents/s, %.0f characters/s", nbDocuments, nbSkipped, nbErrors, nbEntities,
+                nbCharacters, getSeconds(), getDocumentsPerSecond(), getCharactersPerSecond());
+        }
+    }
+
+    /**
+     * Process the input file.
+     */
+    public Summary run() throws IOException {
+        final Summary summary = new Summary();
+        long start = System.nanoTime();
+        Format inputFormat = (format == null) ? Format.fromFileName(input.getName()) : format;
+        final BulkDocumentReader reader = new BulkDocumentReader(input, inputFormat, textField, idField);
+        try {
+            final BulkResultWriter writer = new BulkResultWriter(output, input.getAbsolutePath(), resume);
+            try {
+                summary.nbSkipped = reader.skip(writer.getNbDocuments());
+                if (summary.nbSkipped > 0)
+                    LOGGER.info("Resuming after " + summary.nbSkipped + " documents.");
+                // the documents submitted and not yet written, in the input order
+                final Deque<BulkDocument> pending = new ArrayDeque<BulkDocument>();
+                Delivery delivery = new Delivery(reader, writer, pending, summary, start);
+
+                if (pipelineThreads != null) {
+                    BiotechPipelineExecutor executor = new BiotechPipelineExecutor(pipelineThreads[0],
+                        pipelineThreads[1], pipelineThreads[2], PIPELINE_QUEUE_CAPACITY);
+                    try {
+                        executor.extractSpans(texts(reader, pending), delivery, delivery);
+                        LOGGER.info(String.format(Locale.US, "Busy time of the stages: features %.1f s, labelling " +
+                            "%.1f s, decoding %.1f s", executor.getBusyNanos(Stage.FEATURES) / 1e9,
+                            executor.getBusyNanos(Stage.LABELLING) / 1e9,
+                            executor.getBusyNanos(Stage.RESULT_EXTRACTION) / 1e9));
+                    } finally {
+                        executor.close();
+                    }
+                } else {
+                    BiotechExtractionService service = new BiotechExtractionService(nbWorkers);
+                    try {
+                        service.extractSpans(texts(reader, pending), delivery, delivery);
+                    } finally {
+                        service.close();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+        summary.nanos = System.nanoTime() - start;
+        LOGGER.info("Bulk extraction done: " + summary);
+        return summary;
+    }
+
+    /**
+     * Writing of the results and of the extraction failures of the pending documents, in the
+     * order of the input, with the checkpoints and the progress reports.
+     */
+    private class Delivery implements BiotechExtractionService.SpansHandler, BiotechExtractionService.ErrorHandler {
+        private final BulkDocumentReader reader;
+        private final BulkResultWriter writer;
+        private final Deque<BulkDocument> pending;
+        private final Summary summary;
+        private final long startNanos;
+        private long lastReport = System.nanoTime();
+
+        Delivery(BulkDocumentReader reader, BulkResultWriter writer, Deque<BulkDocument> pending, Summary summary,
+                 long startNanos) {
+            this.reader = reader;
+            this.writer = writer;
+            this.pending = pending;
+            this.summary = summary;
+            this.startNanos = startNanos;
+        }
+
+        public void onResult(int index, String text, BiotechEntitySpans spans) throws IOException {
+            BulkDocument document = pending.poll();
+            writer.write(document, spans);
+            if (document.getError() != null)
+                summary.nbErrors++;
+            else
+                summary.nbCharacters += document.getText().length();
+            if (spans != null)
+                summary.nbEntities += spans.size();
+            written();
+        }
+
+        /**
+         * A document whose extraction failed is written with the error, so that the run goes on
+         * and is not stopped again by the same document when resumed.
+         */
+        public void onError(int index, String text, Exception error) throws IOException {
+            BulkDocument document = pending.poll();
+            LOGGER.warn("The extraction of the document of line " + document.getLine() + " failed.", error);
+            writer.write(document.withError("extraction failed: " + error), (BiotechEntitySpans) null);
+            summary.nbErrors++;
+            written();
+        }
+
+        private void written() throws IOException {
+            summary.nbDocuments++;
+            if (summary.nbDocuments % checkpointInterval == 0)
+                writer.checkpoint();
+            long now = System.nanoTime();
+            if (now - lastReport > progressIntervalMillis * 1000000L) {
+                lastReport = now;
+                summary.nanos = now - startNanos;
+                LOGGER.info(String.format(Locale.US, "%.1f%% of the input: ", 100 * reader.getProgress()) + summary);
+            }
+        }
+    }
+
+    /**
+     * The texts of the documents of the reader, the documents being added to the pending ones
+     * as their text is consumed. A document which could not be read has a null text, for which
+     * the extraction gives a null result.
+     */
+    private static Iterator<String> texts(final BulkDocumentReader reader, final Deque<BulkDocument> pending) {
+        return new Iterator<String>() {
+            private BulkDocument next = read();
+
+            private BulkDocument read() {
+                try {
+                    return reader.next();
+                } catch (IOException e) {
+                    throw new GrobidException("An exception occured while reading the input.", e);
+                }
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public String next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                BulkDocument document = next;
+                pending.add(document);
+                next = read();
+                return document.getText();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Numbers of threads of the three stages of the pipeline, given as "f,l,d".
+     */
+    private static int[] parsePipeline(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 3)
+            throw new IllegalArgumentException("The pipeline threads must be given as f,l,d: " + value);
+        int[] threads = new int[3];
+        for (int i = 0; i < 3; i++)
+            threads[i] = Integer.parseInt(parts[i].trim());
+        return threads;
+    }
+
+    private static void usage() {
+        System.err.println("usage: BiotechBulkExtraction -in <file> -out <file> [-format jsonl|tsv|txt] " +
+            "[-textField <name>] [-idField <name>] [-workers <n> | -pipeline <f,l,d>] [-checkpoint <n>] [-resume] " +
+            "[-gH <grobid home>]");
+    }
+
+    public static void main(String[] args) {
+        String in = null;
+        String out = null;
+        String pGrobidHome = System.getProperty("grobid.home", "../grobid-home");
+        Format format = null;
+        String textField = "text";
+        String idField = "id";
+        int nbWorkers = Runtime.getRuntime().availableProcessors();
+        int[] pipelineThreads = null;
+        int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        boolean resume = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-resume")) {
+                    resume = true;
+                    continue;
+                }
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                String value = args[++i];
+                if (arg.equals("-in"))
+                    in = value;
+                else if (arg.equals("-out"))
+                    out = value;
+                else if (arg.equals("-format"))
+                    format = Format.valueOf(value.toUpperCase(Locale.US));
+                else if (arg.equals("-textField"))
+                    textField = value;
+                else if (arg.equals("-idField"))
+                    idField = value;
+                else if (arg.equals("-workers"))
+                    nbWorkers = Integer.parseInt(value);
+                else if (arg.equals("-pipeline"))
+                    pipelineThreads = parsePipeline(value);
+                else if (arg.equals("-checkpoint"))
+                    checkpointInterval = Integer.parseInt(value);
+                else if (arg.equals("-gH"))
+                    pGrobidHome = value;
+                else
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            if ( (in == null) || (out == null) )
+                throw new IllegalArgumentException("The input and the output must be given.");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(1);
+        }
+
+        try {
+            GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(pGrobidHome));
+            GrobidProperties.getInstance(grobidHomeFinder);
+        } catch (final Exception exp) {
+            System.err.println("GROBID initialisation failed: " + exp);
+            exp.printStackTrace();
+            System.exit(1);
+        }
+
+        try {
+            BiotechBulkExtraction extraction = new BiotechBulkExtraction(new File(in), new File(out));
+            extraction.setFormat(format);
+            extraction.setFields(textField, idField);
+            extraction.setNbWorkers(nbWorkers);
+            if (pipelineThreads != null)
+                extraction.setPipeline(pipelineThreads[0], pipelineThreads[1], pipelineThreads[2]);
+            extraction.setCheckpointInterval(checkpointInterval);
+            extraction.setResume(resume);
+            System.out.println(extraction.run());
+        } catch (Exception e) {
+            LOGGER.error("The bulk extraction failed.", e);
+            System.exit(1);
+        }
+    }
+
+}
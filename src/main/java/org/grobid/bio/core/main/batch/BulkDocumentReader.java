@@ -0,0 +1,252 @@
+package org.grobid.core.main.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.grobid.service.BiotechJson;
+
+/**
+ * Reader of the documents of a corpus file, one document per line, plain or compressed with
+ * gzip (detected from the content of the file).
+ *
+ * The lines are either JSON objects with the text of the document in a given field and an
+ * optional identifier, or tab separated identifier and text, or the raw text of a document.
+ * Blank lines are ignored. A line which can not be parsed gives a document with an error and
+ * no text, so that the numbering of the documents does not depend on the content of the lines.
+ *
+ * @author Patrice Lopez
+ */
+public class BulkDocumentReader implements Closeable {
+
+    public enum Format {
+        /** one JSON object per line */
+        JSONL,
+        /** identifier and text separated by a tabulation */
+        TSV,
+        /** the text of the document */
+        TXT;
+
+        /**
+         * Format given by the extension of a file name, with or without the .gz extension,
+         * JSONL for .jsonl and .json, TSV for .tsv, TXT otherwise.
+         */
+        public static Format fromFileName(String name) {
+            name = name.toLowerCase();
+            if (name.endsWith(".gz"))
+                name = name.substring(0, name.length() - 3);
+            if (name.endsWith(".jsonl") || name.endsWith(".json"))
+                return JSONL;
+            if (name.endsWith(".tsv"))
+                return TSV;
+            return TXT;
+        }
+    }
+
+    /**
+     * A document of the corpus file.
+     */
+    public static class BulkDocument {
+        private final long number;
+        private final long line;
+        private final String id;
+        private final String text;
+        private final String error;
+
+        BulkDocument(long number, long line, String id, String text, String error) {
+            this.number = number;
+            this.line = line;
+            this.id = id;
+            this.text = text;
+            this.error = error;
+        }
+
+        /**
+         * Index of the document in the file, from 0.
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * Line of the document in the file, from 1.
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Identifier of the document, null if not given.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Text of the document, null if the line could not be parsed.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Reason why the line could not be parsed or the extraction failed, null otherwise.
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * The document with the given error, for an extraction failure.
+         */
+        BulkDocument withError(String error) {
+            return new BulkDocument(number, line, id, text, error);
+        }
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final BufferedReader reader;
+    private final Format format;
+    private final String textField;
+    private final String idField;
+
+    private long nbDocuments = 0;
+    private long nbLines = 0;
+
+    /**
+     * @param file      the corpus file
+     * @param format    format of the lines
+     * @param textField field of the text of the documents for JSONL
+     * @param idField   field of the identifier of the documents for JSONL
+     */
+    public BulkDocumentReader(File file, Format format, String textField, String idField) throws IOException {
+        this.format = format;
+        this.textField = textField;
+        this.idField = idField;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            if (isGzip(in))
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+            reader = new BufferedReader(new InputStreamReader(in, UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static boolean isGzip(InputStream in) throws IOException {
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        return (b1 == 0x1f) && (b2 == 0x8b);
+    }
+
+    /**
+     * The next document, null at the end of the file.
+     */
+    public BulkDocument next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            nbLines++;
+            if (line.trim().length() > 0)
+                return parse(line);
+        }
+        return null;
+    }
+
+    /**
+     * Skip the given number of documents, e.g. already processed.
+     *
+     * @return the number of documents skipped, less than asked at the end of the file
+     */
+    public long skip(long nbDocuments) throws IOException {
+        long skipped = 0;
+        String line;
+        while ( (skipped < nbDocuments) && ((line = reader.readLine()) != null) ) {
+            nbLines++;
+            if (line.trim().length() > 0) {
+                this.nbDocuments++;
+                skipped++;
+            }
+        }
+        return skipped;
+    }
+
+    private BulkDocument parse(String line) {
+        long number = nbDocuments++;
+        switch (format) {
+            case JSONL:
+                try {
+                    Object json = BiotechJson.parse(line);
+                    if (!(json instanceof Map))
+                        return new BulkDocument(number, nbLines, null, null, "not a JSON object");
+                    Map<?, ?> object = (Map<?, ?>) json;
+                    String id = idToString(object.get(idField));
+                    Object text = object.get(textField);
+                    if (!(text instanceof String))
+                        return new BulkDocument(number, nbLines, id, null, "no \"" + textField + "\" string field");
+                    return new BulkDocument(number, nbLines, id, (String) text, null);
+                } catch (IllegalArgumentException e) {
+                    return new BulkDocument(number, nbLines, null, null, e.getMessage());
+                }
+            case TSV:
+                int ind = line.indexOf('\t');
+                if (ind == -1)
+                    return new BulkDocument(number, nbLines, null, null, "no tabulation after the identifier");
+                return new BulkDocument(number, nbLines, line.substring(0, ind), line.substring(ind + 1), null);
+            default:
+                return new BulkDocument(number, nbLines, null, line, null);
+        }
+    }
+
+    private static String idToString(Object id) {
+        if (id == null)
+            return null;
+        if (id instanceof Double) {
+            double value = (Double) id;
+            if ( (value == Math.rint(value)) && !Double.isInfinite(value) )
+                return Long.toString((long) value);
+        }
+        return id.toString();
+    }
+
+    /**
+     * Number of documents read or skipped.
+     */
+    public long getNbDocuments() {
+        return nbDocuments;
+    }
+
+    /**
+     * Part of the file read so far, between 0 and 1, approximate because of the buffering.
+     */
+    public double getProgress() {
+        try {
+            long size = channel.size();
+            return (size == 0) ? 1 : Math.min(1.0, ((double) channel.position()) / size);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
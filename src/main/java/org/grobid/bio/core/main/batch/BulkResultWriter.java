@@ -0,0 +1,206 @@
+package org.grobid.core.main.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.main.batch.BulkDocumentReader.BulkDocument;
+import org.grobid.service.BiotechJson;
+
+/**
+ * Writer of the entities of the documents of a corpus, one JSON object per line, with a
+ * checkpoint allowing to resume an interrupted run.
+ *
+ * A checkpoint records, in the file &lt;output&gt;.checkpoint, the number of documents written
+ * and the size of the output file once these documents are flushed to the disk. When resuming,
+ * the output file is truncated to this size, removing the results written after the last
+ * checkpoint, and the writing continues from there. A compressed output (.gz) is written as a
+ * gzip member per checkpoint, the concatenated members being read as one stream by gzip
+ * readers.
+ *
+ * @author Patrice Lopez
+ */
+public class BulkResultWriter implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File checkpointFile;
+    private final String input;
+    private final boolean gzip;
+    private final FileChannel channel;
+    private final OutputStream out;
+    private GZIPOutputStream gzipOut;
+    private Writer writer;
+
+    private long nbDocuments;
+    private long nbEntities = 0;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * @param file   the output file, compressed if its name ends with .gz
+     * @param input  name of the input, recorded with the checkpoints to check that a run is
+     *               resumed with the same input
+     * @param resume true to continue from the last checkpoint, if any, otherwise the output is
+     *               written from the beginning and the checkpoint of a previous run is removed
+     */
+    public BulkResultWriter(File file, String input, boolean resume) throws IOException {
+        this.input = input;
+        gzip = file.getName().endsWith(".gz");
+        checkpointFile = new File(file.getPath() + ".checkpoint");
+        long size = 0;
+        nbDocuments = 0;
+        if (resume && checkpointFile.exists()) {
+            Properties checkpoint = readCheckpoint(checkpointFile);
+            if (!input.equals(checkpoint.getProperty("input")))
+                throw new GrobidException("The checkpoint " + checkpointFile + " is for another input: "
+                    + checkpoint.getProperty("input"));
+            nbDocuments = Long.parseLong(checkpoint.getProperty("documents"));
+            size = Long.parseLong(checkpoint.getProperty("outputBytes"));
+            if (file.length() < size)
+                throw new GrobidException("The output " + file + " is shorter than at the checkpoint.");
+        } else if (!resume) {
+            // the checkpoint of a previous run must not be resumed over the new output
+            Files.deleteIfExists(checkpointFile.toPath());
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(size);
+        channel.position(size);
+        out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        open();
+    }
+
+    private void open() throws IOException {
+        if (gzip) {
+            gzipOut = new GZIPOutputStream(out, BUFFER_SIZE);
+            writer = new OutputStreamWriter(gzipOut, UTF_8);
+        } else {
+            writer = new OutputStreamWriter(out, UTF_8);
+        }
+    }
+
+    private static Properties readCheckpoint(File checkpointFile) throws IOException {
+        Properties checkpoint = new Properties();
+        InputStream in = new FileInputStream(checkpointFile);
+        try {
+            checkpoint.load(in);
+        } finally {
+            in.close();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Number of documents written, including the documents written before the resumed
+     * checkpoint, i.e. the number of input documents to skip when resuming.
+     */
+    public long getNbDocuments() {
+        return nbDocuments;
+    }
+
+    /**
+     * Number of entities written since the writer was opened.
+     */
+    public long getNbEntities() {
+        return nbEntities;
+    }
+
+    /**
+     * Write the entities of a document (an empty list for a null result), or the error of a
+     * document which could not be read.
+     */
+    public void write(BulkDocument document, List<BiotechEntity> entities) throws IOException {
+        write(document, BiotechEntitySpans.fromEntities(entities));
+    }
+
+    /**
+     * Write the entities of a document given as spans (null for a null result), or the error
+     * of a document which could not be read.
+     */
+    public void write(BulkDocument document, BiotechEntitySpans spans) throws IOException {
+        line.setLength(0);
+        line.append('{');
+        if (document.getId() != null) {
+            line.append("\"id\":");
+            BiotechJson.appendString(line, document.getId());
+            line.append(',');
+        }
+        line.append("\"line\":").append(document.getLine());
+        if (document.getError() != null) {
+            line.append(",\"error\":");
+            BiotechJson.appendString(line, document.getError());
+        } else {
+            line.append(",\"entities\":");
+            BiotechJson.appendSpans(line, document.getText(), spans);
+            if (spans != null)
+                nbEntities += spans.size();
+        }
+        line.append("}\n");
+        writer.append(line);
+        nbDocuments++;
+    }
+
+    /**
+     * Flush the documents written to the disk and record the checkpoint.
+     */
+    public void checkpoint() throws IOException {
+        flush(true);
+    }
+
+    private void flush(boolean reopen) throws IOException {
+        writer.flush();
+        if (gzip)
+            gzipOut.finish();
+        out.flush();
+        channel.force(false);
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("input", input);
+        checkpoint.setProperty("documents", Long.toString(nbDocuments));
+        checkpoint.setProperty("outputBytes", Long.toString(channel.position()));
+        File temporary = new File(checkpointFile.getPath() + ".tmp");
+        OutputStream checkpointOut = new FileOutputStream(temporary);
+        try {
+            checkpoint.store(checkpointOut, "grobid-bio bulk extraction checkpoint");
+        } finally {
+            checkpointOut.close();
+        }
+        Files.move(temporary.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+
+        if (gzip && reopen)
+            open();
+    }
+
+    /**
+     * Record a last checkpoint and close the output.
+     */
+    public void close() throws IOException {
+        try {
+            flush(false);
+        } finally {
+            out.close();
+        }
+    }
+
+}
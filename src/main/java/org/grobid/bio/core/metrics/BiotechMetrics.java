@@ -0,0 +1,55 @@
+package org.grobid.core.metrics;
+
+/**
+ * Receives the measures of the biotech entity extraction: time spent in each stage of the
+ * parser, size of the labelled sequences and overall cost of each extraction call.
+ *
+ * Implementations are called on the hot path by concurrent parsers, so they must be
+ * thread-safe and cheap (no lock, no allocation).
+ *
+ * @author Patrice Lopez
+ */
+public interface BiotechMetrics {
+
+    /**
+     * Stages of an extraction.
+     */
+    enum Stage {
+        TOKENIZATION,
+        FEATURES,
+        LABELLING,
+        RESULT_EXTRACTION
+    }
+
+    /**
+     * False if the measures are ignored, in which case the parser does not measure anything.
+     */
+    boolean isEnabled();
+
+    /**
+     * True if the memory allocated by each extraction call should be measured.
+     */
+    boolean isAllocationTracked();
+
+    /**
+     * Time spent in a stage by an extraction call.
+     */
+    void recordStage(Stage stage, long nanos);
+
+    /**
+     * Number of tokens of a sequence sent to the tagger.
+     */
+    void recordSequence(int nbTokens);
+
+    /**
+     * An extraction call, for one text or a batch of texts.
+     *
+     * @param nbTexts        number of texts
+     * @param nbCharacters   number of characters of the texts
+     * @param nbTokens       number of non-space tokens of the texts
+     * @param nanos          total time of the call
+     * @param allocatedBytes memory allocated by the calling thread during the call, -1 if not measured
+     */
+    void recordExtraction(int nbTexts, int nbCharacters, int nbTokens, long nanos, long allocatedBytes);
+
+}
@@ -0,0 +1,46 @@
+package org.grobid.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the biotech extraction metrics, see {@link JmxBiotechMetrics}.
+ *
+ * @author Patrice Lopez
+ */
+public interface BiotechMetricsMXBean {
+
+    long getExtractions();
+
+    long getTexts();
+
+    long getCharacters();
+
+    long getTokens();
+
+    double getTextsPerSecond();
+
+    double getTokensPerSecond();
+
+    double getMeanExtractionMillis();
+
+    double getP50ExtractionMillis();
+
+    double getP99ExtractionMillis();
+
+    double getMaxExtractionMillis();
+
+    Map<String, Double> getMeanStageMillis();
+
+    Map<String, Double> getP99StageMillis();
+
+    double getMeanSequenceLength();
+
+    long getP99SequenceLength();
+
+    long getMaxSequenceLength();
+
+    double getMeanAllocatedBytes();
+
+    void reset();
+
+}
@@ -0,0 +1,132 @@
+package org.grobid.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import org.grobid.core.metrics.BiotechMetrics.Stage;
+
+/**
+ * Measures of one extraction call, made by the calling thread: the time elapsed since the
+ * previous mark is attributed to the stage being marked, so that a stage repeated for each
+ * text of a batch is cumulated.
+ *
+ * @author Patrice Lopez
+ */
+public final class ExtractionTrace {
+
+    // allocation counter of the threads, null if not supported by the JVM
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+                if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled())
+                    return allocationBean;
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot compatible JVM
+        }
+        return null;
+    }
+
+    private final long[] stageNanos = new long[Stage.values().length];
+    private final long start;
+    private final long startAllocated;
+    private long last;
+
+    private int nbTexts = 0;
+    private int nbCharacters = 0;
+    private int nbTokens = 0;
+
+    private ExtractionTrace(boolean trackAllocation) {
+        startAllocated = (trackAllocation && (ALLOCATION_BEAN != null)) ?
+            ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+        start = System.nanoTime();
+        last = start;
+    }
+
+    /**
+     * Start the measures of an extraction call.
+     *
+     * @param trackAllocation true to measure the memory allocated by the current thread
+     */
+    public static ExtractionTrace start(boolean trackAllocation) {
+        return new ExtractionTrace(trackAllocation);
+    }
+
+    /**
+     * Attribute the time elapsed since the previous mark to the given stage.
+     */
+    public void mark(Stage stage) {
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - last;
+        last = now;
+    }
+
+    /**
+     * Count a text of the extraction call.
+     */
+    public void addText(int nbCharacters) {
+        nbTexts++;
+        this.nbCharacters += nbCharacters;
+    }
+
+    /**
+     * Count the tokens of a labelled sequence.
+     */
+    public void addTokens(int nbTokens) {
+        this.nbTokens += nbTokens;
+    }
+
+    public int getNbTexts() {
+        return nbTexts;
+    }
+
+    public int getNbCharacters() {
+        return nbCharacters;
+    }
+
+    public int getNbTokens() {
+        return nbTokens;
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * End the measures and give them to the metrics.
+     *
+     * @return the total time of the extraction call in nanoseconds
+     */
+    public long finish(BiotechMetrics metrics) {
+        long nanos = System.nanoTime() - start;
+        if (metrics.isEnabled()) {
+            long allocated = (startAllocated >= 0) ?
+                ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) - startAllocated : -1;
+            for (Stage stage : Stage.values()) {
+                metrics.recordStage(stage, stageNanos[stage.ordinal()]);
+            }
+            metrics.recordExtraction(nbTexts, nbCharacters, nbTokens, nanos, allocated);
+        }
+        return nanos;
+    }
+
+    /**
+     * Time of each stage, for logging.
+     */
+    public String describeStages() {
+        StringBuilder description = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (description.length() > 0)
+                description.append(", ");
+            description.append(stage.name().toLowerCase(Locale.US)).append(' ')
+                .append(String.format(Locale.US, "%.3f", stageNanos[stage.ordinal()] / 1e6)).append(" ms");
+        }
+        return description.toString();
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.grobid.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values with power-of-two buckets: the bucket i
+ * contains the values from 2^(i-1) to 2^i - 1, the bucket 0 the value 0. Recording a value
+ * costs a few atomic increments, and the quantiles are given with a relative error of at
+ * most a factor 2, which is enough to follow latencies and sizes spanning several orders
+ * of magnitude.
+ *
+ * @author Patrice Lopez
+ */
+public final class Histogram {
+
+    private static final int NB_BUCKETS = 65;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NB_BUCKETS);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while ( (value > currentMax) && !max.compareAndSet(currentMax, value) ) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return (n == 0) ? 0 : ((double) sum.get()) / n;
+    }
+
+    /**
+     * Upper bound of the bucket containing the given quantile, at most the maximum value,
+     * 0 if nothing has been recorded.
+     *
+     * @param quantile between 0 and 1, e.g. 0.99
+     */
+    public long getQuantile(double quantile) {
+        long n = count.get();
+        if (n == 0)
+            return 0;
+        long rank = (long) Math.ceil(quantile * n);
+        if (rank < 1)
+            rank = 1;
+        long cumulated = 0;
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            cumulated += buckets.get(i);
+            if (cumulated >= rank) {
+                long upperBound = (i == 0) ? 0 : (i == 64) ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upperBound, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < NB_BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+}
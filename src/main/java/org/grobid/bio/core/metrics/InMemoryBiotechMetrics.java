@@ -0,0 +1,221 @@
+package org.grobid.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics kept in memory: counters and histograms of the time per stage and per extraction
+ * call, of the sequence lengths and of the allocated memory, with a textual report.
+ *
+ * @author Patrice Lopez
+ */
+public class InMemoryBiotechMetrics implements BiotechMetrics {
+
+    private final boolean allocationTracked;
+
+    private final Histogram[] stageNanos = new Histogram[Stage.values().length];
+    private final Histogram extractionNanos = new Histogram();
+    private final Histogram sequenceLengths = new Histogram();
+    private final Histogram allocatedBytes = new Histogram();
+
+    private final AtomicLong nbExtractions = new AtomicLong(0);
+    private final AtomicLong nbTexts = new AtomicLong(0);
+    private final AtomicLong nbCharacters = new AtomicLong(0);
+    private final AtomicLong nbTokens = new AtomicLong(0);
+
+    private volatile long startTime = System.nanoTime();
+
+    public InMemoryBiotechMetrics() {
+        this(true);
+    }
+
+    /**
+     * @param allocationTracked true to measure the memory allocated by each extraction call,
+     *                          when supported by the JVM
+     */
+    public InMemoryBiotechMetrics(boolean allocationTracked) {
+        this.allocationTracked = allocationTracked;
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i] = new Histogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public boolean isAllocationTracked() {
+        return allocationTracked;
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()].record(nanos);
+    }
+
+    public void recordSequence(int nbTokens) {
+        sequenceLengths.record(nbTokens);
+    }
+
+    public void recordExtraction(int nbTexts, int nbCharacters, int nbTokens, long nanos, long allocated) {
+        nbExtractions.incrementAndGet();
+        this.nbTexts.addAndGet(nbTexts);
+        this.nbCharacters.addAndGet(nbCharacters);
+        this.nbTokens.addAndGet(nbTokens);
+        extractionNanos.record(nanos);
+        if (allocated >= 0)
+            allocatedBytes.record(allocated);
+    }
+
+    public Histogram getStageHistogram(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public Histogram getExtractionHistogram() {
+        return extractionNanos;
+    }
+
+    public Histogram getSequenceLengthHistogram() {
+        return sequenceLengths;
+    }
+
+    public Histogram getAllocatedBytesHistogram() {
+        return allocatedBytes;
+    }
+
+    public long getExtractions() {
+        return nbExtractions.get();
+    }
+
+    public long getTexts() {
+        return nbTexts.get();
+    }
+
+    public long getCharacters() {
+        return nbCharacters.get();
+    }
+
+    public long getTokens() {
+        return nbTokens.get();
+    }
+
+    /**
+     * Number of texts processed per second since the creation or the last reset.
+     */
+    public double getTextsPerSecond() {
+        return perSecond(nbTexts.get());
+    }
+
+    /**
+     * Number of tokens processed per second since the creation or the last reset.
+     */
+    public double getTokensPerSecond() {
+        return perSecond(nbTokens.get());
+    }
+
+    private double perSecond(long count) {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return (seconds <= 0) ? 0 : count / seconds;
+    }
+
+    public double getMeanExtractionMillis() {
+        return extractionNanos.getMean() / 1e6;
+    }
+
+    public double getP50ExtractionMillis() {
+        return extractionNanos.getQuantile(0.5) / 1e6;
+    }
+
+    public double getP99ExtractionMillis() {
+        return extractionNanos.getQuantile(0.99) / 1e6;
+    }
+
+    public double getMaxExtractionMillis() {
+        return extractionNanos.getMax() / 1e6;
+    }
+
+    /**
+     * Mean time per extraction call of each stage, in milliseconds.
+     */
+    public Map<String, Double> getMeanStageMillis() {
+        Map<String, Double> means = new LinkedHashMap<String, Double>();
+        for (Stage stage : Stage.values()) {
+            means.put(stage.name(), stageNanos[stage.ordinal()].getMean() / 1e6);
+        }
+        return means;
+    }
+
+    /**
+     * 99th percentile of the time per extraction call of each stage, in milliseconds.
+     */
+    public Map<String, Double> getP99StageMillis() {
+        Map<String, Double> quantiles = new LinkedHashMap<String, Double>();
+        for (Stage stage : Stage.values()) {
+            quantiles.put(stage.name(), stageNanos[stage.ordinal()].getQuantile(0.99) / 1e6);
+        }
+        return quantiles;
+    }
+
+    public double getMeanSequenceLength() {
+        return sequenceLengths.getMean();
+    }
+
+    public long getP99SequenceLength() {
+        return sequenceLengths.getQuantile(0.99);
+    }
+
+    public long getMaxSequenceLength() {
+        return sequenceLengths.getMax();
+    }
+
+    /**
+     * Mean memory allocated per extraction call, 0 if not measured.
+     */
+    public double getMeanAllocatedBytes() {
+        return allocatedBytes.getMean();
+    }
+
+    public void reset() {
+        for (Histogram histogram : stageNanos) {
+            histogram.reset();
+        }
+        extractionNanos.reset();
+        sequenceLengths.reset();
+        allocatedBytes.reset();
+        nbExtractions.set(0);
+        nbTexts.set(0);
+        nbCharacters.set(0);
+        nbTokens.set(0);
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Textual summary of the metrics.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US,
+            "extractions: %d, texts: %d, characters: %d, tokens: %d (%.1f texts/s, %.1f tokens/s)\n",
+            getExtractions(), getTexts(), getCharacters(), getTokens(), getTextsPerSecond(), getTokensPerSecond()));
+        appendTimes(report, "extraction", extractionNanos);
+        for (Stage stage : Stage.values()) {
+            appendTimes(report, stage.name().toLowerCase(Locale.US), stageNanos[stage.ordinal()]);
+        }
+        report.append(String.format(Locale.US, "sequence length: mean %.1f, p50 %d, p99 %d, max %d tokens\n",
+            sequenceLengths.getMean(), sequenceLengths.getQuantile(0.5), sequenceLengths.getQuantile(0.99),
+            sequenceLengths.getMax()));
+        if (allocatedBytes.getCount() > 0) {
+            report.append(String.format(Locale.US, "allocated: mean %.0f, p99 %d, max %d bytes per extraction\n",
+                allocatedBytes.getMean(), allocatedBytes.getQuantile(0.99), allocatedBytes.getMax()));
+        }
+        return report.toString();
+    }
+
+    private static void appendTimes(StringBuilder report, String name, Histogram histogram) {
+        report.append(String.format(Locale.US, "%s: mean %.3f, p50 %.3f, p99 %.3f, max %.3f ms\n", name,
+            histogram.getMean() / 1e6, histogram.getQuantile(0.5) / 1e6, histogram.getQuantile(0.99) / 1e6,
+            histogram.getMax() / 1e6));
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.grobid.core.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.grobid.core.exceptions.GrobidException;
+
+/**
+ * In-memory metrics exposed as a JMX MXBean, under the name
+ * <code>org.grobid.bio:type=BiotechMetrics,name=&lt;name&gt;</code> of the platform MBean server.
+ *
+ * @author Patrice Lopez
+ */
+public class JmxBiotechMetrics extends InMemoryBiotechMetrics implements BiotechMetricsMXBean {
+
+    private final ObjectName objectName;
+
+    /**
+     * Create the metrics and register them.
+     *
+     * @param name name of the metrics, e.g. the name of the service
+     */
+    public JmxBiotechMetrics(String name) {
+        this(name, true);
+    }
+
+    public JmxBiotechMetrics(String name, boolean allocationTracked) {
+        super(allocationTracked);
+        try {
+            objectName = new ObjectName("org.grobid.bio:type=BiotechMetrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new GrobidException("Cannot register the biotech metrics " + name + " in JMX.", e);
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Remove the metrics from the MBean server.
+     */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new GrobidException("Cannot unregister the biotech metrics " + objectName, e);
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.grobid.core.metrics;
+
+/**
+ * Metrics ignoring all the measures, the default of the parsers.
+ *
+ * @author Patrice Lopez
+ */
+public final class NoOpBiotechMetrics implements BiotechMetrics {
+
+    public static final NoOpBiotechMetrics INSTANCE = new NoOpBiotechMetrics();
+
+    private NoOpBiotechMetrics() {
+    }
+
+    public boolean isEnabled() {
+        return false;
+    }
+
+    public boolean isAllocationTracked() {
+        return false;
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+    }
+
+    public void recordSequence(int nbTokens) {
+    }
+
+    public void recordExtraction(int nbTexts, int nbCharacters, int nbTokens, long nanos, long allocatedBytes) {
+    }
+
+}
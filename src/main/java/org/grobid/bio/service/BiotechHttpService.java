@@ -0,0 +1,440 @@
+package org.grobid.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.engines.BiotechTaggerPool;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.metrics.Histogram;
+import org.grobid.core.metrics.JmxBiotechMetrics;
+import org.grobid.core.utilities.GrobidProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Standalone HTTP service for the extraction of biotech entities, based on the HTTP server
+ * of the JDK.
+ *
+ * <ul>
+ * <li><code>POST /api/processBioText</code>: entities of a text, given as the raw request body
+ * (<code>text/plain</code>), as the <code>text</code> form parameter, or as a JSON object
+ * <code>{"text": "..."}</code>, or of several texts given as <code>{"texts": ["...", ...]}</code>.
+ * The entities are returned in JSON, or in TSV (one entity per line: index of the text, type,
+ * start and end offsets, text of the entity) with the <code>format=tsv</code> parameter or
+ * the <code>text/tab-separated-values</code> Accept header.</li>
+ * <li><code>GET /api/isalive</code>: true if the service is up.</li>
+ * <li><code>GET /api/stats</code>: counters and times of the batching, in JSON.</li>
+ * </ul>
+ *
+ * The texts of the concurrent requests are labelled together by a {@link BiotechRequestBatcher}.
+ * A request is rejected with the status 503 when the admission queue is full. The
+ * <code>Server-Timing</code> header of a response gives the time waited in the queue, the time
+ * of the extraction of the batch and the total time of the request, and the
+ * <code>X-Batch-Size</code> header the number of texts labelled together.
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechHttpService implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechHttpService.class);
+
+    // configuration of the service started by main, as system properties
+    public static final String PORT_PROPERTY = "grobid.bio.service.port";
+    public static final String WORKERS_PROPERTY = "grobid.bio.service.workers";
+    public static final String HTTP_THREADS_PROPERTY = "grobid.bio.service.httpThreads";
+    public static final String MAX_BATCH_SIZE_PROPERTY = "grobid.bio.service.batch.maxSize";
+    public static final String MAX_BATCH_DELAY_PROPERTY = "grobid.bio.service.batch.maxDelay";
+    public static final String QUEUE_SIZE_PROPERTY = "grobid.bio.service.queue.size";
+    public static final String MAX_TEXT_LENGTH_PROPERTY = "grobid.bio.service.maxTextLength";
+    public static final String TIMEOUT_PROPERTY = "grobid.bio.service.timeout";
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MS = 2;
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    public static final int DEFAULT_MAX_TEXT_LENGTH = 100000;
+    public static final long DEFAULT_TIMEOUT_MS = 60000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String TSV_TYPE = "text/tab-separated-values";
+
+    private final HttpServer server;
+    private final ExecutorService httpExecutor;
+    private final BiotechRequestBatcher batcher;
+    private final int maxTextLength;
+    private final long timeoutMillis;
+
+    /**
+     * @param address       address to listen to, with the port 0 for any free port
+     * @param batcher       batcher of the extractions, not closed with the service
+     * @param nbHttpThreads number of threads handling the requests, i.e. maximum number of
+     *                      requests waiting for their extraction
+     * @param maxTextLength maximum number of characters of the texts of a request
+     * @param timeoutMillis maximum time waited for the extraction of a request
+     */
+    public BiotechHttpService(InetSocketAddress address,
+                              BiotechRequestBatcher batcher,
+                              int nbHttpThreads,
+                              int maxTextLength,
+                              long timeoutMillis) throws IOException {
+        this.batcher = batcher;
+        this.maxTextLength = maxTextLength;
+        this.timeoutMillis = timeoutMillis;
+        server = HttpServer.create(address, 0);
+        httpExecutor = Executors.newFixedThreadPool(nbHttpThreads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "biotech-http-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(httpExecutor);
+        server.createContext("/api/processBioText", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                handleProcess(exchange);
+            }
+        });
+        server.createContext("/api/isalive", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, "text/plain", "true");
+            }
+        });
+        server.createContext("/api/stats", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, "application/json", stats());
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.info("Biotech extraction service listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop listening, waiting at most one second for the requests being handled.
+     */
+    public void close() {
+        server.stop(1);
+        httpExecutor.shutdown();
+        try {
+            httpExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleProcess(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                send(exchange, 405, "text/plain", "Only POST is supported.");
+                return;
+            }
+            String body = readBody(exchange.getRequestBody(), 8L * maxTextLength + 1024);
+            if (body == null) {
+                send(exchange, 413, "text/plain", "The request is too large.");
+                return;
+            }
+            boolean tsv;
+            List<String> texts;
+            boolean multiple;
+            try {
+                Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                tsv = isTsv(exchange, parameters);
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                contentType = (contentType == null) ? "" : contentType.toLowerCase(Locale.US);
+                if (contentType.startsWith("application/json")) {
+                    Object json = BiotechJson.parse(body);
+                    multiple = (json instanceof Map) && ((Map<?, ?>) json).containsKey("texts");
+                    texts = jsonTexts(json);
+                } else if (contentType.startsWith("application/x-www-form-urlencoded")) {
+                    parameters.putAll(parseQuery(body));
+                    texts = Arrays.asList(parameters.get("text"));
+                    multiple = false;
+                } else {
+                    texts = Arrays.asList(body);
+                    multiple = false;
+                }
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, "text/plain", e.getMessage());
+                return;
+            }
+            int length = 0;
+            for (String text : texts) {
+                if (text == null) {
+                    send(exchange, 400, "text/plain", "No text to process.");
+                    return;
+                }
+                length += text.length();
+            }
+            if ( (length > maxTextLength) || (texts.size() > batcher.getQueueCapacity()) ) {
+                send(exchange, 413, "text/plain", "The texts of a request are limited to " + maxTextLength
+                    + " characters and " + batcher.getQueueCapacity() + " texts.");
+                return;
+            }
+
+            List<BiotechRequestBatcher.Request> requests = batcher.submit(texts);
+            if (requests == null) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "text/plain", "The service is overloaded, retry later.");
+                return;
+            }
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            for (BiotechRequestBatcher.Request request : requests) {
+                if (!request.await(Math.max(0, deadline - System.currentTimeMillis()))) {
+                    send(exchange, 503, "text/plain", "The extraction did not finish in time.");
+                    return;
+                }
+            }
+
+            String response = tsv ? toTsv(requests) : toJson(requests, multiple);
+            setTimingHeaders(exchange.getResponseHeaders(), requests, start);
+            send(exchange, 200, tsv ? TSV_TYPE : "application/json", response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "text/plain", "Interrupted.");
+        } catch (GrobidException e) {
+            LOGGER.error("Extraction failed.", e);
+            send(exchange, 500, "text/plain", "An exception occured while extracting entities.");
+        } catch (RuntimeException e) {
+            LOGGER.error("Unexpected exception while handling a request.", e);
+            send(exchange, 500, "text/plain", "Internal error.");
+        }
+    }
+
+    private static boolean isTsv(HttpExchange exchange, Map<String, String> parameters) {
+        String format = parameters.get("format");
+        if (format != null)
+            return format.equalsIgnoreCase("tsv");
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return (accept != null) && accept.toLowerCase(Locale.US).startsWith(TSV_TYPE);
+    }
+
+    private static List<String> jsonTexts(Object json) {
+        if (!(json instanceof Map))
+            throw new IllegalArgumentException("A JSON object is expected.");
+        Map<?, ?> object = (Map<?, ?>) json;
+        List<String> texts = new ArrayList<String>();
+        if (object.containsKey("texts")) {
+            if (!(object.get("texts") instanceof List))
+                throw new IllegalArgumentException("\"texts\" must be an array of strings.");
+            for (Object text : (List<?>) object.get("texts")) {
+                if (!(text instanceof String))
+                    throw new IllegalArgumentException("\"texts\" must be an array of strings.");
+                texts.add((String) text);
+            }
+        } else {
+            if (!(object.get("text") instanceof String))
+                throw new IllegalArgumentException("\"text\" or \"texts\" expected.");
+            texts.add((String) object.get("text"));
+        }
+        return texts;
+    }
+
+    private static String toJson(List<BiotechRequestBatcher.Request> requests, boolean multiple) {
+        StringBuilder json = new StringBuilder();
+        if (multiple) {
+            json.append("{\"results\":[");
+            for (int i = 0; i < requests.size(); i++) {
+                if (i > 0)
+                    json.append(',');
+                BiotechJson.appendEntities(json, requests.get(i).getText(), requests.get(i).getEntities());
+            }
+            json.append("]}");
+        } else {
+            json.append("{\"entities\":");
+            BiotechJson.appendEntities(json, requests.get(0).getText(), requests.get(0).getEntities());
+            json.append('}');
+        }
+        return json.toString();
+    }
+
+    private static String toTsv(List<BiotechRequestBatcher.Request> requests) {
+        StringBuilder tsv = new StringBuilder();
+        for (int i = 0; i < requests.size(); i++) {
+            String text = requests.get(i).getText();
+            List<BiotechEntity> entities = requests.get(i).getEntities();
+            if (entities == null)
+                continue;
+            for (BiotechEntity entity : entities) {
+                tsv.append(i).append('\t')
+                    .append(BiotechJson.entityType(entity)).append('\t')
+                    .append(entity.getOffsetStart()).append('\t')
+                    .append(entity.getOffsetEnd()).append('\t');
+                for (int k = entity.getOffsetStart(); k < entity.getOffsetEnd(); k++) {
+                    char c = text.charAt(k);
+                    tsv.append( (c == '\t') || (c == '\n') || (c == '\r') ? ' ' : c );
+                }
+                tsv.append('\n');
+            }
+        }
+        return tsv.toString();
+    }
+
+    private static void setTimingHeaders(Headers headers, List<BiotechRequestBatcher.Request> requests, long start) {
+        double queueMillis = 0;
+        double processingMillis = 0;
+        int batchSize = 0;
+        for (BiotechRequestBatcher.Request request : requests) {
+            queueMillis = Math.max(queueMillis, request.getQueueMillis());
+            processingMillis = Math.max(processingMillis, request.getProcessingMillis());
+            batchSize = Math.max(batchSize, request.getBatchSize());
+        }
+        headers.set("Server-Timing", String.format(Locale.US, "queue;dur=%.3f, extraction;dur=%.3f, total;dur=%.3f",
+            queueMillis, processingMillis, (System.nanoTime() - start) / 1e6));
+        headers.set("X-Batch-Size", Integer.toString(batchSize));
+    }
+
+    private String stats() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"accepted\":").append(batcher.getNbAccepted());
+        json.append(",\"rejected\":").append(batcher.getNbRejected());
+        json.append(",\"queued\":").append(batcher.getQueueSize());
+        json.append(",\"batches\":").append(batcher.getNbBatches());
+        Histogram batchSizes = batcher.getBatchSizeHistogram();
+        json.append(String.format(Locale.US, ",\"meanBatchSize\":%.2f", batchSizes.getMean()));
+        json.append(",\"maxBatchSize\":").append(batchSizes.getMax());
+        appendMillis(json, "queueMillis", batcher.getQueueTimeHistogram());
+        appendMillis(json, "batchMillis", batcher.getBatchTimeHistogram());
+        json.append('}');
+        return json.toString();
+    }
+
+    private static void appendMillis(StringBuilder json, String name, Histogram histogram) {
+        json.append(String.format(Locale.US, ",\"%s\":{\"mean\":%.3f,\"p50\":%.3f,\"p99\":%.3f,\"max\":%.3f}", name,
+            histogram.getMean() / 1e6, histogram.getQuantile(0.5) / 1e6, histogram.getQuantile(0.99) / 1e6,
+            histogram.getMax() / 1e6));
+    }
+
+    /**
+     * The body of a request as UTF-8, null if larger than the given number of bytes.
+     */
+    private static String readBody(InputStream in, long maxBytes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+                if (body.size() > maxBytes)
+                    return null;
+            }
+        } finally {
+            in.close();
+        }
+        return new String(body.toByteArray(), UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if ( (query == null) || (query.length() == 0) )
+            return parameters;
+        for (String parameter : query.split("&")) {
+            int ind = parameter.indexOf('=');
+            if (ind == -1)
+                parameters.put(URLDecoder.decode(parameter, "UTF-8"), "");
+            else
+                parameters.put(URLDecoder.decode(parameter.substring(0, ind), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(ind + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Start the service with the configuration given by the system properties, the grobid home
+     * being given by the property grobid.home (default ../grobid-home).
+     */
+    public static void main(String[] args) {
+        try {
+            String pGrobidHome = System.getProperty("grobid.home", "../grobid-home");
+            GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(pGrobidHome));
+            GrobidProperties.getInstance(grobidHomeFinder);
+        } catch (final Exception exp) {
+            System.err.println("GROBID initialisation failed: " + exp);
+            exp.printStackTrace();
+            return;
+        }
+
+        int nbWorkers = Integer.getInteger(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        int queueSize = Integer.getInteger(QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE);
+        try {
+            // one tagger per worker is loaded before the first request
+            final BiotechTaggerPool taggerPool = new BiotechTaggerPool(nbWorkers);
+            taggerPool.warmUp(nbWorkers);
+            BiotechParser parser = new BiotechParser(taggerPool);
+            final JmxBiotechMetrics metrics = new JmxBiotechMetrics("grobid-bio-service");
+            parser.setMetrics(metrics);
+
+            final BiotechRequestBatcher batcher = new BiotechRequestBatcher(parser, nbWorkers,
+                Integer.getInteger(MAX_BATCH_SIZE_PROPERTY, DEFAULT_MAX_BATCH_SIZE),
+                Long.getLong(MAX_BATCH_DELAY_PROPERTY, DEFAULT_MAX_BATCH_DELAY_MS),
+                queueSize);
+            final BiotechHttpService service = new BiotechHttpService(
+                new InetSocketAddress(Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT)),
+                batcher,
+                Integer.getInteger(HTTP_THREADS_PROPERTY, Math.max(16, 4 * nbWorkers)),
+                Integer.getInteger(MAX_TEXT_LENGTH_PROPERTY, DEFAULT_MAX_TEXT_LENGTH),
+                Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MS));
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    service.close();
+                    batcher.close();
+                    taggerPool.close();
+                    LOGGER.info("Biotech extraction service stopped:\n" + metrics.report());
+                    metrics.unregister();
+                }
+            });
+            service.start();
+        } catch (Exception e) {
+            LOGGER.error("The biotech extraction service could not be started.", e);
+        }
+    }
+
+}
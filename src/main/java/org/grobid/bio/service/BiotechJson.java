@@ -0,0 +1,335 @@
+package org.grobid.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+
+/**
+ * Minimal JSON support for the extraction service: parsing of the request bodies and
+ * writing of the entities, without a JSON library dependency.
+ *
+ * The parsed values are {@link Map} (objects, in the order of the keys), {@link List}
+ * (arrays), {@link String}, {@link Double}, {@link Boolean} and null. The nesting of the
+ * objects and arrays is limited to {@link #MAX_DEPTH} levels, the parser being recursive.
+ *
+ * @author Patrice Lopez
+ */
+public final class BiotechJson {
+
+    /**
+     * Maximum nesting level of the objects and arrays of a parsed document.
+     */
+    public static final int MAX_DEPTH = 64;
+
+    private BiotechJson() {
+    }
+
+    /**
+     * Parse a JSON document.
+     *
+     * @throws IllegalArgumentException if the document is not valid JSON or is nested more
+     *                                  than {@link #MAX_DEPTH} levels
+     */
+    public static Object parse(String json) {
+        Parser parser = new Parser(json);
+        parser.skipSpaces();
+        Object value = parser.value();
+        parser.skipSpaces();
+        if (parser.pos < json.length())
+            throw parser.error("unexpected content after the value");
+        return value;
+    }
+
+    private static final class Parser {
+        private final String s;
+        private int pos = 0;
+        // current nesting level of the objects and arrays
+        private int depth = 0;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at offset " + pos + ": " + message);
+        }
+
+        void skipSpaces() {
+            while ( (pos < s.length()) && (" \t\r\n".indexOf(s.charAt(pos)) != -1) )
+                pos++;
+        }
+
+        char peek() {
+            if (pos >= s.length())
+                throw error("unexpected end");
+            return s.charAt(pos);
+        }
+
+        void enter() {
+            if (++depth > MAX_DEPTH)
+                throw error("too deeply nested");
+        }
+
+        void expect(char c) {
+            if (peek() != c)
+                throw error("'" + c + "' expected");
+            pos++;
+        }
+
+        Object value() {
+            char c = peek();
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return number();
+            }
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<String, Object>();
+            expect('{');
+            enter();
+            skipSpaces();
+            if (peek() == '}') {
+                pos++;
+                depth--;
+                return object;
+            }
+            while (true) {
+                skipSpaces();
+                String key = string();
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+                object.put(key, value());
+                skipSpaces();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    depth--;
+                    return object;
+                }
+            }
+        }
+
+        List<Object> array() {
+            List<Object> array = new ArrayList<Object>();
+            expect('[');
+            enter();
+            skipSpaces();
+            if (peek() == ']') {
+                pos++;
+                depth--;
+                return array;
+            }
+            while (true) {
+                skipSpaces();
+                array.add(value());
+                skipSpaces();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    depth--;
+                    return array;
+                }
+            }
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder res = null;
+            int start = pos;
+            while (true) {
+                char c = peek();
+                if (c == '"') {
+                    String value = (res == null) ? s.substring(start, pos) : res.append(s, start, pos).toString();
+                    pos++;
+                    return value;
+                }
+                if (c < ' ')
+                    throw error("control character in a string");
+                if (c != '\\') {
+                    pos++;
+                    continue;
+                }
+                if (res == null)
+                    res = new StringBuilder();
+                res.append(s, start, pos);
+                pos++;
+                char escaped = peek();
+                pos++;
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        res.append(escaped);
+                        break;
+                    case 'b':
+                        res.append('\b');
+                        break;
+                    case 'f':
+                        res.append('\f');
+                        break;
+                    case 'n':
+                        res.append('\n');
+                        break;
+                    case 'r':
+                        res.append('\r');
+                        break;
+                    case 't':
+                        res.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > s.length())
+                            throw error("unexpected end");
+                        try {
+                            res.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("invalid unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("invalid escape");
+                }
+                start = pos;
+            }
+        }
+
+        Object literal(String literal, Object value) {
+            if (!s.startsWith(literal, pos))
+                throw error("invalid value");
+            pos += literal.length();
+            return value;
+        }
+
+        Double number() {
+            int start = pos;
+            while ( (pos < s.length()) && ("+-0123456789.eE".indexOf(s.charAt(pos)) != -1) )
+                pos++;
+            if (start == pos)
+                throw error("invalid value");
+            try {
+                return Double.valueOf(s.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("invalid number");
+            }
+        }
+    }
+
+    /**
+     * Append a string as a JSON string, quoted and escaped.
+     */
+    public static void appendString(StringBuilder json, CharSequence value) {
+        appendString(json, value, 0, value.length());
+    }
+
+    /**
+     * Append the characters [start, end) of a sequence as a JSON string.
+     */
+    public static void appendString(StringBuilder json, CharSequence value, int start, int end) {
+        json.append('"');
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if ( (c < ' ') || (c == '\u2028') || (c == '\u2029') ) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Type of an entity without the brackets of the label, e.g. "protein".
+     */
+    public static String entityType(BiotechEntity entity) {
+        String type = entity.getRawName();
+        if ( (type != null) && type.startsWith("<") && type.endsWith(">") )
+            type = type.substring(1, type.length() - 1);
+        return type;
+    }
+
+    /**
+     * Append the entities of a text as a JSON array of objects with the type, the offsets and
+     * the text of the entity (end offset exclusive).
+     */
+    public static void appendEntities(StringBuilder json, String text, List<BiotechEntity> entities) {
+        json.append('[');
+        if (entities != null) {
+            boolean first = true;
+            for (BiotechEntity entity : entities) {
+                if (!first)
+                    json.append(',');
+                first = false;
+                json.append("{\"type\":");
+                appendString(json, entityType(entity));
+                json.append(",\"start\":").append(entity.getOffsetStart());
+                json.append(",\"end\":").append(entity.getOffsetEnd());
+                json.append(",\"text\":");
+                appendString(json, text.substring(entity.getOffsetStart(), entity.getOffsetEnd()));
+                json.append('}');
+            }
+        }
+        json.append(']');
+    }
+
+    /**
+     * Append the entities of a text given as spans, as by
+     * {@link #appendEntities(StringBuilder, String, List)}, without entity objects.
+     */
+    public static void appendSpans(StringBuilder json, CharSequence text, BiotechEntitySpans spans) {
+        json.append('[');
+        if (spans != null) {
+            for (int i = 0; i < spans.size(); i++) {
+                if (i > 0)
+                    json.append(',');
+                json.append("{\"type\":");
+                appendString(json, spans.typeLabel(spans.type(i)));
+                json.append(",\"start\":").append(spans.start(i));
+                json.append(",\"end\":").append(spans.end(i));
+                json.append(",\"text\":");
+                appendString(json, text, spans.start(i), spans.end(i));
+                json.append('}');
+            }
+        }
+        json.append(']');
+    }
+
+}
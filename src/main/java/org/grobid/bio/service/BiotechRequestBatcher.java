@@ -0,0 +1,335 @@
+package org.grobid.service;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.metrics.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Micro-batching of the extraction requests of concurrent clients.
+ *
+ * The texts submitted are put in a bounded admission queue, and a submission is rejected at
+ * once when the queue is full (load shedding) rather than waiting. A fixed number of worker
+ * threads take the waiting texts by batches of at most a given size, waiting at most a given
+ * delay for a batch to fill, and label each batch with a single tagger call
+ * ({@link BiotechParser#extractBiotechEntities(List)}). Under load the batches fill without
+ * waiting, so that the cost of a tagger call is shared by many requests; with few requests
+ * the delay bounds the added latency.
+ *
+ * @author Patrice Lopez
+ */
+public class BiotechRequestBatcher implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BiotechRequestBatcher.class);
+
+    // polling period of the idle workers to check that the batcher is not closed
+    private static final long IDLE_POLL_MS = 100;
+
+    /**
+     * A text submitted for extraction, completed when its batch has been processed.
+     */
+    public static class Request {
+        private final String text;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        // written by the worker before the latch is released
+        private long startNanos;
+        private long endNanos;
+        private int batchSize;
+        private List<BiotechEntity> entities;
+        private Throwable error;
+
+        Request(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Wait for the extraction of the text.
+         *
+         * @return false if the extraction is not finished after the given time
+         */
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * The entities of the text once the extraction is done, null for an empty text.
+         */
+        public List<BiotechEntity> getEntities() {
+            if (!isDone())
+                throw new IllegalStateException("The extraction is not finished.");
+            if (error != null)
+                throw new GrobidException("An exception occured while extracting entities.", error);
+            return entities;
+        }
+
+        /**
+         * Time spent in the admission queue and waiting for the batch to fill.
+         */
+        public double getQueueMillis() {
+            return isDone() ? (startNanos - enqueuedNanos) / 1e6 : 0;
+        }
+
+        /**
+         * Time of the extraction of the batch of the text.
+         */
+        public double getProcessingMillis() {
+            return isDone() ? (endNanos - startNanos) / 1e6 : 0;
+        }
+
+        /**
+         * Number of texts of the batch of the text.
+         */
+        public int getBatchSize() {
+            return isDone() ? batchSize : 0;
+        }
+
+        void complete(long startNanos, int batchSize, List<BiotechEntity> entities, Throwable error) {
+            this.startNanos = startNanos;
+            this.endNanos = System.nanoTime();
+            this.batchSize = batchSize;
+            this.entities = entities;
+            this.error = error;
+            done.countDown();
+        }
+    }
+
+    private final BiotechParser parser;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final int queueCapacity;
+
+    // the queue itself is not bounded, the admission is limited by the permits
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+    private final Semaphore admission;
+    private final Thread[] workers;
+    private volatile boolean closed = false;
+
+    private final AtomicLong nbAccepted = new AtomicLong(0);
+    private final AtomicLong nbRejected = new AtomicLong(0);
+    private final AtomicLong nbBatches = new AtomicLong(0);
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram queueNanos = new Histogram();
+    private final Histogram batchNanos = new Histogram();
+
+    /**
+     * @param parser              parser used by all the workers, which must support concurrent
+     *                            extractions (e.g. labelling with a {@link org.grobid.core.engines.BiotechTaggerPool})
+     * @param nbWorkers           number of worker threads, i.e. of concurrent tagger calls
+     * @param maxBatchSize        maximum number of texts labelled with one tagger call
+     * @param maxBatchDelayMillis maximum time waited for a batch to fill, 0 to only take the texts
+     *                            already waiting
+     * @param queueCapacity       maximum number of texts waiting for a worker
+     */
+    public BiotechRequestBatcher(BiotechParser parser,
+                                 int nbWorkers,
+                                 int maxBatchSize,
+                                 long maxBatchDelayMillis,
+                                 int queueCapacity) {
+        if (nbWorkers < 1)
+            throw new IllegalArgumentException("The number of workers must be at least 1: " + nbWorkers);
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("The maximum batch size must be at least 1: " + maxBatchSize);
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("The queue capacity must be at least 1: " + queueCapacity);
+        this.parser = parser;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxBatchDelayMillis));
+        this.queueCapacity = queueCapacity;
+        this.admission = new Semaphore(queueCapacity);
+
+        workers = new Thread[nbWorkers];
+        for (int i = 0; i < nbWorkers; i++) {
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    work();
+                }
+            }, "biotech-batcher-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Submit a text for extraction.
+     *
+     * @return the pending request, or null if the admission queue is full
+     */
+    public Request submit(String text) {
+        List<Request> requests = submit(Collections.singletonList(text));
+        return (requests == null) ? null : requests.get(0);
+    }
+
+    /**
+     * Submit texts for extraction, all or none of them being admitted.
+     *
+     * @return the pending requests, in the order of the texts, or null if the admission queue
+     * has not enough room for all the texts
+     */
+    public List<Request> submit(List<String> texts) {
+        if (closed)
+            throw new GrobidException("The biotech request batcher is closed.");
+        if (!admission.tryAcquire(texts.size())) {
+            nbRejected.addAndGet(texts.size());
+            return null;
+        }
+        List<Request> requests = new ArrayList<Request>(texts.size());
+        for (String text : texts) {
+            Request request = new Request(text);
+            requests.add(request);
+            queue.add(request);
+        }
+        nbAccepted.addAndGet(texts.size());
+        return requests;
+    }
+
+    private void work() {
+        List<Request> batch = new ArrayList<Request>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Request first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + maxBatchDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    // what is already waiting, then what arrives before the deadline
+                    Request next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0)
+                            break;
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null)
+                            break;
+                    }
+                    batch.add(next);
+                }
+                admission.release(batch.size());
+                process(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Request request : batch) {
+                request.complete(System.nanoTime(), batch.size(), null, e);
+            }
+        }
+    }
+
+    private void process(List<Request> batch) {
+        long start = System.nanoTime();
+        List<String> texts = new ArrayList<String>(batch.size());
+        for (Request request : batch) {
+            texts.add(request.getText());
+            queueNanos.record(start - request.enqueuedNanos);
+        }
+        List<List<BiotechEntity>> results = null;
+        Throwable error = null;
+        try {
+            results = parser.extractBiotechEntities(texts);
+        } catch (Throwable e) {
+            LOGGER.error("The extraction of a batch of " + batch.size() + " texts failed.", e);
+            error = e;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(start, batch.size(), (results == null) ? null : results.get(i), error);
+        }
+        nbBatches.incrementAndGet();
+        batchSizes.record(batch.size());
+        batchNanos.record(System.nanoTime() - start);
+    }
+
+    public int getNbWorkers() {
+        return workers.length;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Number of texts waiting for a worker.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getNbAccepted() {
+        return nbAccepted.get();
+    }
+
+    /**
+     * Number of texts rejected because the admission queue was full.
+     */
+    public long getNbRejected() {
+        return nbRejected.get();
+    }
+
+    public long getNbBatches() {
+        return nbBatches.get();
+    }
+
+    public Histogram getBatchSizeHistogram() {
+        return batchSizes;
+    }
+
+    /**
+     * Time from the submission of the texts to the start of their batch, in nanoseconds.
+     */
+    public Histogram getQueueTimeHistogram() {
+        return queueNanos;
+    }
+
+    /**
+     * Time of the extraction of the batches, in nanoseconds.
+     */
+    public Histogram getBatchTimeHistogram() {
+        return batchNanos;
+    }
+
+    /**
+     * Stop accepting texts and wait for the workers to process the texts already admitted.
+     */
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            try {
+                worker.join(60000);
+                if (worker.isAlive()) {
+                    LOGGER.warn("Biotech batcher worker " + worker.getName() + " did not terminate in time.");
+                    worker.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
@@ -2,18 +2,17 @@ package org.grobid.trainer;
 
 import org.grobid.core.GrobidModels;
 import org.grobid.core.utilities.GrobidProperties;
-import org.grobid.core.features.FeaturesVectorBiotechEntity;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
 import org.grobid.core.utilities.OffsetPosition;
-import org.grobid.core.utilities.TextUtilities;
 import org.grobid.core.utilities.GrobidProperties;
 import org.grobid.core.exceptions.GrobidException;
 import org.grobid.trainer.sax.*;
 import org.grobid.core.main.GrobidHomeFinder;
 
 import org.grobid.trainer.evaluation.EvaluationUtilities;
+import org.grobid.core.analyzers.BioTokenizer;
 import org.grobid.core.engines.BiotechParser;
-import org.grobid.core.lexicon.BioLexicon;
-import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.engines.BiotechTaggerPool;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -22,15 +21,29 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.StringTokenizer;
-
-import org.apache.commons.io.FileUtils;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @author Patrice Lopez
  */
 public class BiotechEntityTrainer extends AbstractTrainer {
 
-	private BioLexicon lexicon = BioLexicon.getInstance();
+	// number of sentences of a file processed in parallel at once
+	private static final int SENTENCE_CHUNK = 4096;
+
+	// number of sentences below which the features are generated sequentially
+	private static final int SEQUENTIAL_THRESHOLD = 32;
+
+	// number of sentences labelled at once during the JNLPBA evaluation
+	private static final int EVAL_BATCH_SIZE = 128;
+
+	// number of threads for the generation of the training data features
+	private int nbThreads = Runtime.getRuntime().availableProcessors();
+
+	// cache of the features of the corpus files, null if not used
+	private TrainingFeaturesCache featuresCache = null;
+	private boolean useFeaturesCache = true;
 
     public BiotechEntityTrainer() {
         super(GrobidModels.ENTITIES_BIOTECH);
@@ -47,8 +60,38 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 		return createCRFPPData(corpusDir, trainingOutputPath, null, 1.0);
 	}
 
+	/**
+	 * Number of threads used to generate the features of the training data.
+	 */
+	public void setNbThreads(int nbThreads) {
+		if (nbThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be at least 1: " + nbThreads);
+		this.nbThreads = nbThreads;
+	}
+
+	/**
+	 * Use or not the cache of the features of the corpus files (used by default), located 
+	 * in the Grobid temporary directory. 
+	 */
+	public void setUseFeaturesCache(boolean useFeaturesCache) {
+		this.useFeaturesCache = useFeaturesCache;
+	}
+
+	private synchronized TrainingFeaturesCache getFeaturesCache() {
+		if (!useFeaturesCache)
+			return null;
+		if (featuresCache == null)
+			featuresCache = new TrainingFeaturesCache(new File(GrobidProperties.getTempPath(), "biotech-features"));
+		return featuresCache;
+	}
+
     /**
-     * Add the selected features to the model training for bio entities
+     * Add the selected features to the model training for bio entities. 
+     * 
+     * The features of the sentences of a file are generated in parallel, by chunks of 
+     * sentences, and are written in the order of the sentences, so that the training file 
+     * is the same whatever the number of threads. The features of a file are taken from 
+     * the features cache when the file and the feature set did not change.
      */
 	@Override
     public int createCRFPPData(final File corpusDir, 
@@ -56,6 +99,7 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 							final File evalOutputPath, 
 							double splitRatio) {
         int totalExamples = 0;
+        ForkJoinPool pool = null;
         try {
 			if (corpusDir == null) {
 				throw new IllegalStateException("Training folder does not seem valid");
@@ -69,11 +113,7 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 
             // then we convert the tei files into the usual CRF label format
             // we process all tei files in the output directory
-            File[] refFiles = corpusDir.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    return name.endsWith("1.iob2") && name.startsWith("Genia");
-                }
-            });
+            File[] refFiles = corpusFiles(corpusDir);
 
             if (refFiles == null) {
                 return 0;
@@ -81,134 +121,262 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 
             System.out.println(refFiles.length + " files");
 
-            // the file for writing the training data
-            Writer writer2 = new OutputStreamWriter(new FileOutputStream(trainingOutputPath), "UTF8");
+            if (nbThreads > 1)
+            	pool = new ForkJoinPool(nbThreads);
+            final ForkJoinPool featuresPool = pool;
+            TrainingFeaturesCache cache = getFeaturesCache();
+            TrainingFeaturesCache.FeaturesGenerator generator = new TrainingFeaturesCache.FeaturesGenerator() {
+            	public void writeFeatures(File source, Writer writer) throws IOException {
+            		writeFileFeatures(source, writer, featuresPool);
+            	}
+            };
 
-            String name;
-            int n = 0;
-            for (; n < refFiles.length; n++) {
-                File thefile = refFiles[n];				
-				
-				// to store biomedicine term positions
-                List<List<OffsetPosition>> bioNamesTokenPositions = new ArrayList<List<OffsetPosition>>();
-				
-				// we simply need to retokenize the token following Grobid approach										
-				List<String> labeled = new ArrayList<String>();
-			  	BufferedReader br = new BufferedReader(new InputStreamReader(
-					new DataInputStream(new FileInputStream(thefile))));
-			  	String line;
-				List<LayoutToken> input = new ArrayList<LayoutToken>();
-			  	while ((line = br.readLine()) != null)   {
-					if (line.trim().length() == 0) {
-						labeled.add("@newline");
-						bioNamesTokenPositions.add(lexicon.tokenPositionsBioNames(input));
-						input = new ArrayList<LayoutToken>();
-						continue;
-					}
-					int ind = line.indexOf("\t");
-					if (ind == -1) {
-						continue;
-					}
-					// we take the standard Grobid tokenizer
-					StringTokenizer st2 = new StringTokenizer(line.substring(0, ind), 
-						TextUtilities.fullPunctuations, true);
-					while(st2.hasMoreTokens()) {
-						String tok = st2.nextToken();
-						if (tok.trim().length() == 0)
-							continue;
-						String label = line.substring(ind+1, line.length());
-						if (label.equals("O")) {
-							label = "<other>";
-						}
-						else if (label.startsWith("I-")) {
-							label = "I-<" + label.substring(2,label.length()) + ">";
-						}
-						else if (label.startsWith("B-")) {
-							label = "B-<" + label.substring(2,label.length()) + ">";
-						}
-						labeled.add(tok + "\t" + label);
-						input.add(new LayoutToken(tok));
-					}										
-				}
-				//labeled.add("@newline");				                 				
-				bioNamesTokenPositions.add(lexicon.tokenPositionsBioNames(input));
-				 
-                addFeatures(labeled, writer2, bioNamesTokenPositions);
-                writer2.write("\n");
-				br.close();                
+            // the file for writing the training data
+            Writer writer2 = new BufferedWriter(
+            	new OutputStreamWriter(new FileOutputStream(trainingOutputPath), "UTF8"), 1 << 16);
+            try {
+            	int nbCached = 0;
+	            for (int n = 0; n < refFiles.length; n++) {
+	            	if (cache == null) 
+	            		writeFileFeatures(refFiles[n], writer2, pool);
+	            	else if (cache.writeFeatures(refFiles[n], writer2, generator))
+	            		nbCached++;
+	            }
+	            if (cache != null)
+	            	System.out.println(nbCached + " files with cached features");
+            } finally {
+            	writer2.close();
             }
-
-            writer2.close();
         } catch (Exception e) {
             throw new GrobidException("An exception occured while running Grobid.", e);
+        } finally {
+        	if (pool != null)
+        		pool.shutdown();
         }
         return totalExamples;
     }
 
+	/**
+	 * The iob2 files of a corpus directory, null if the directory cannot be listed.
+	 */
+	private static File[] corpusFiles(File corpusDir) {
+		return corpusDir.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith("1.iob2") && name.startsWith("Genia");
+			}
+		});
+	}
 
-    @SuppressWarnings({"UnusedParameters"})
+	/**
+	 * Write the features of the sentences of a corpus file, followed by an empty line.
+	 * The sentences are read and processed by chunks, so that the memory used does not 
+	 * depend on the size of the file.
+	 */
+	private void writeFileFeatures(File file, Writer writer, ForkJoinPool pool) throws IOException {
+		SentenceReader reader = new SentenceReader(file);
+		try {
+			List<TrainingSentence> chunk = new ArrayList<TrainingSentence>();
+			TrainingSentence sentence;
+			do {
+				sentence = reader.next();
+				if (sentence != null)
+					chunk.add(sentence);
+				if ( (chunk.size() == SENTENCE_CHUNK) || ((sentence == null) && (chunk.size() > 0)) ) {
+					String[] features = new String[chunk.size()];
+					FeaturesTask task = new FeaturesTask(chunk, features, 0, chunk.size());
+					if (pool != null)
+						pool.invoke(task);
+					else
+						task.compute();
+					for (String sentenceFeatures : features) {
+						writer.write(sentenceFeatures);
+					}
+					chunk.clear();
+				}
+			} while (sentence != null);
+		} finally {
+			reader.close();
+		}
+		writer.write("\n");
+	}
+
+	/**
+	 * Tokens and labels of a sentence of an iob2 file.
+	 */
+	static final class TrainingSentence {
+		final List<String> tokens = new ArrayList<String>();
+		final List<String> labels = new ArrayList<String>();
+		// false for the last sentence of a file if not followed by an empty line
+		boolean ended = false;
+	}
+
+	/**
+	 * Generation of the features of a range of sentences, split in two until the range is 
+	 * small enough.
+	 */
+	private final class FeaturesTask extends RecursiveAction {
+		private final List<TrainingSentence> sentences;
+		private final String[] features;
+		private final int start;
+		private final int end;
+
+		FeaturesTask(List<TrainingSentence> sentences, String[] features, int start, int end) {
+			this.sentences = sentences;
+			this.features = features;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= SEQUENTIAL_THRESHOLD) {
+				for (int i = start; i < end; i++) {
+					features[i] = sentenceFeatures(sentences.get(i));
+				}
+			} else {
+				int middle = (start + end) >>> 1;
+				invokeAll(new FeaturesTask(sentences, features, start, middle), 
+					new FeaturesTask(sentences, features, middle, end));
+			}
+		}
+	}
+
+	/**
+	 * Reader of the sentences of an iob2 file (one token and its label per line, separated 
+	 * by a tabulation, sentences ended by an empty line), retokenizing the tokens following 
+	 * the Grobid approach. Each empty line ends a sentence, possibly empty, and the end of 
+	 * the file ends a last sentence which is not marked as ended.
+	 */
+	static final class SentenceReader implements Closeable {
+		private final BufferedReader br;
+		private boolean finished = false;
+		private final BioTokenizer.Tokens lineTokens = new BioTokenizer.Tokens();
+
+		SentenceReader(File file) throws IOException {
+			br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		}
+
+		/**
+		 * The next sentence, null at the end of the file.
+		 */
+		TrainingSentence next() throws IOException {
+			if (finished)
+				return null;
+			TrainingSentence sentence = new TrainingSentence();
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (line.trim().length() == 0) {
+					sentence.ended = true;
+					return sentence;
+				}
+				int ind = line.indexOf("\t");
+				if (ind == -1) {
+					continue;
+				}
+				String label = line.substring(ind+1, line.length());
+				if (label.equals("O")) {
+					label = "<other>";
+				}
+				else if (label.startsWith("I-")) {
+					label = "I-<" + label.substring(2,label.length()) + ">";
+				}
+				else if (label.startsWith("B-")) {
+					label = "B-<" + label.substring(2,label.length()) + ">";
+				}
+				// the label is the first field of what follows the token 
+				label = label.trim();
+				int endLabel = indexOfSeparator(label);
+				if (endLabel != -1)
+					label = label.substring(0, endLabel);
+				if (label.length() == 0)
+					continue;
+				// the same tokenization as the parser at runtime
+				BioTokenizer.tokenize(line.substring(0, ind), lineTokens);
+				for(int i = 0; i < lineTokens.size(); i++) {
+					if (lineTokens.isSpace(i))
+						continue;
+					sentence.tokens.add(lineTokens.text(i));
+					sentence.labels.add(label);
+				}
+			}
+			finished = true;
+			return sentence;
+		}
+
+		public void close() throws IOException {
+			br.close();
+		}
+	}
+
+	/**
+	 * The feature lines of a sentence, followed by an empty line if the sentence is ended.
+	 */
+	String sentenceFeatures(TrainingSentence sentence) {
+		int size = sentence.tokens.size();
+		StringBuilder buffer = new StringBuilder(size * 128 + 1);
+		FeaturesWriterBiotechEntity featuresWriter = new FeaturesWriterBiotechEntity(buffer);
+
+		for (int i = 0; i < size; i++) {
+			featuresWriter.addToken(sentence.tokens.get(i), sentence.labels.get(i));
+		}
+		if (sentence.ended)
+			featuresWriter.endSequence();
+		return buffer.toString();
+	}
+
+	/**
+	 * Write the features of labelled tokens, one token and its label per line separated by a 
+	 * tabulation or a space, the sentences being separated by a line "@newline".
+	 *
+	 * @param bioNamesTokenPositions ignored, the gazetteer being not used by the feature set
+	 * @deprecated the training data are generated by {@link #createCRFPPData(File, File, File, double)}
+	 */
+	@Deprecated
+	@SuppressWarnings({"UnusedParameters"})
     public void addFeatures(List<String> texts,
                             Writer writer,
                             List<List<OffsetPosition>> bioNamesTokenPositions) {
-        int totalLine = texts.size();
-        int posit = 0;
-		int sentence = 0;
-		int currentBioNameIndex = 0;
-		List<OffsetPosition> localPositions = bioNamesTokenPositions.get(sentence);
-        boolean isBioToken = false;
-        boolean isBioNameToken = false;
-        try {
-            for (String line : texts) {
+		try {
+			TrainingSentence sentence = new TrainingSentence();
+			for (String line : texts) {
 				if (line.trim().equals("@newline")) {
-					writer.write("\n");
-	                writer.flush();	
-					sentence++;				
-					localPositions = bioNamesTokenPositions.get(sentence);
+					sentence.ended = true;
+					writer.write(sentenceFeatures(sentence));
+					sentence = new TrainingSentence();
+					continue;
 				}
-	
+				// token and label are separated by a tab or a space
 				int ind = line.indexOf("\t");
 				if (ind == -1) 
 				 	ind = line.indexOf(" ");
-				if (ind != -1) {
-					if (lexicon.inBioDictionary(line.substring(0,ind))) {
-						isBioToken = true;
-					}					
-				}
-				
-				// do we have a biomedicine term at position posit?				
-				for(int mm = currentBioNameIndex; mm < localPositions.size(); mm++) {
-					if ( (posit >= localPositions.get(mm).start) && (posit <= localPositions.get(mm).end) ) {
-						isBioNameToken = true;
-						currentBioNameIndex = mm;
-						break;
-					}
-					else if (posit < localPositions.get(mm).start) {
-						isBioNameToken = false;
-						break;
-					}
-					else if (posit > localPositions.get(mm).end) {
-						continue;
-					}
-				}
-				
-                FeaturesVectorBiotechEntity featuresVector =
-                        FeaturesVectorBiotechEntity.addFeaturesBiotechEntities(line,
-                                totalLine,
-                                posit,
-                                isBioToken,
-                                isBioNameToken);
-                if (featuresVector.label == null)
-                    continue;
-                writer.write(featuresVector.printVector());
-                writer.flush();
-                posit++;
-				isBioToken = false;
-				isBioNameToken = false;
-            }
-        } catch (Exception e) {
-            throw new GrobidException("An exception occured while running Grobid.", e);
-        }
-    }
+				if (ind == -1)
+					continue;
+				String token = line.substring(0, ind).trim();
+				String label = line.substring(ind+1).trim();
+				if ( (token.length() == 0) || (label.length() == 0) )
+					continue;
+				int endLabel = indexOfSeparator(label);
+				if (endLabel != -1)
+					label = label.substring(0, endLabel);
+				sentence.tokens.add(token);
+				sentence.labels.add(label);
+			}
+			writer.write(sentenceFeatures(sentence));
+			writer.flush();
+		} catch (IOException e) {
+			throw new GrobidException("An exception occured while running Grobid.", e);
+		}
+	}
+
+	private static int indexOfSeparator(String s) {
+		int indTab = s.indexOf("\t");
+		int indSpace = s.indexOf(" ");
+		if (indTab == -1)
+			return indSpace;
+		if (indSpace == -1)
+			return indTab;
+		return Math.min(indTab, indSpace);
+	}
 
 	/**
 	 *  Standard evaluation via the the usual Grobid evaluation framework.
@@ -227,48 +395,43 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 	 *  Evaluation based on the Genia Entity Recognition task of the International Joint 
 	 *  Workshop on Natural Language Processing in Biomedicine and its Applications in 2004.
 	 *  This is the event corresponding to the JNLPBA corpus. 
+	 *
+	 *  The evaluation is streamed: the sentences are labelled by batches as they are read, 
+	 *  the labels are aligned on the fly with the raw tokenisation of the task and each 
+	 *  sentence is scored as soon as it is aligned, so that the memory used does not depend 
+	 *  on the size of the evaluation corpus.
 	 */
 	public String evaluate_jnlpba() {
-		StringBuffer report = new StringBuffer();
 		try {
-			BiotechParser parser = new BiotechParser();
-			
-			File evalDataF = GrobidProperties.getInstance().getEvalCorpusPath(
-				new File(new File("resources").getAbsolutePath()), model);
-		
-			File tmpEvalPath = getTempEvaluationDataPath();		
-			createCRFPPData(evalDataF, tmpEvalPath);			
-		
-			BufferedReader bufReader = new BufferedReader(
-                    new InputStreamReader(new FileInputStream(tmpEvalPath), "UTF-8"));
-
-			// the parser needs to be applied on a sentence level as it has been trained as such
-            String line;
-            StringBuffer ress = new StringBuffer();
-			StringBuffer theResultBuffer = new StringBuffer();
-            while ((line = bufReader.readLine()) != null) {
-                ress.append(line+"\n");
-				if ( (line.trim().length() == 0) && (ress.length() > 10) ) {
-					theResultBuffer.append(parser.label(ress.toString()) + "\n");	
-					ress = new StringBuffer();
-				}
-            }
-
-			String theResult = theResultBuffer.toString();
-			File rawGeniaInput = new File(evalDataF.getAbsolutePath() + "/NLPBA-Genia4ERtest/Genia4EReval1.raw");
-			
-			bufReader = new BufferedReader(
-                    new InputStreamReader(new FileInputStream(rawGeniaInput), "UTF-8"));
-
-            ArrayList<String> blocks = new ArrayList<String>();
-            while ((line = bufReader.readLine()) != null) {
-                blocks.add(line);
-            }
-            bufReader.close();
-
-			StringBuffer finalRes = new StringBuffer();
+			return evaluate_jnlpba(new BiotechParser(BiotechTaggerPool.getInstance()));
+		}
+		catch (GrobidException e) {
+			throw e;
+		}
+		catch (Exception e) {
+            throw new GrobidException("An exception occurred while evaluating Grobid.", e);
+        }
+	}
 
-            StringTokenizer stt = new StringTokenizer(theResult, "\n");
+	String evaluate_jnlpba(BiotechParser parser) throws IOException {
+		File evalDataF = GrobidProperties.getInstance().getEvalCorpusPath(
+			new File(new File("resources").getAbsolutePath()), model);
+		File[] evalFiles = corpusFiles(evalDataF);
+		if (evalFiles == null)
+			throw new IllegalStateException("Evaluation folder does not seem valid");
+
+		File rawGeniaInput = new File(evalDataF.getAbsolutePath() + "/NLPBA-Genia4ERtest/Genia4EReval1.raw");
+		File referenceFile = new File(evalDataF.getAbsolutePath() + "/Genia4EReval1.iob2");
+
+		LabelledTokens labelledTokens = new LabelledTokens(parser, evalFiles);
+		BufferedReader rawReader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(rawGeniaInput), "UTF-8"));
+		BufferedReader referenceReader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(referenceFile), "UTF-8"));
+		try {
+			// the JNLPBA evaluation, equivalent to the evalIOB2.pl script, is done in-process
+			IOB2Scorer scorer = new IOB2Scorer();
+			List<String> answerTags = new ArrayList<String>();
 
 			// the Genia task result tokenisation is follow the unlabelled raw data - 
 			// Grobid segments more than what provided, so we have to adjust Grobid
@@ -277,32 +440,27 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 			boolean previousB = false;
 			boolean previousI = false;
 			String previousLabel = "O";
-			while(n < blocks.size()) {
+			String line2;
+			while ((line2 = rawReader.readLine()) != null) {
 				boolean consumed = false;
-				String line2 = blocks.get(n).trim();
+				line2 = line2.trim();
 				
 				if (line2.length() == 0) {
-					finalRes.append("\n");
+					scoreSentence(scorer, referenceReader, answerTags);
 					n++;
 					previousB = false;
 					previousI = false;
 					continue;			
 				}
-				else {
-					finalRes.append(line2);
-				}
+				// a raw token without aligned Grobid token is considered as outside any entity
+				String answerTag = "O";
 				int ind = 0;
 				
 				while(!consumed) {					
-          	  		if (stt.hasMoreTokens()) {									
-		                line = stt.nextToken();
-					}
-					else
+					String line = labelledTokens.nextLine();
+					if (line == null)
 						break;									
 			
-	                if (line.length() == 0) {
-						break;
-					}
 					StringTokenizer st = new StringTokenizer(line, "\t");
 	                String currentToken = null;
 	                String previousToken = null;
@@ -344,39 +502,26 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 						String label = null;
 						if (currentToken.equals("<other>")) {
 							label = "O";
-							finalRes.append("\t"+label+"\n");
+							answerTag = label;
 							previousB = false;
 							previousI = false;
 						}
-						else if (previousB) {
+						else if (previousB || previousI) {
 							label = currentToken.replace("<","").replace(">","");
 							if (label.equals(previousLabel)) {
-								finalRes.append("\t"+"I-"+label+"\n");
+								answerTag = "I-"+label;
 								previousB = false;
 								previousI = true;
 							}
 							else {
-								finalRes.append("\t"+"B-"+label+"\n");
+								answerTag = "B-"+label;
 								previousB = true;
 								previousI = false;
 							}														
 						}
-						else if (previousI) {
-							label = currentToken.replace("<","").replace(">","");
-							if (label.equals(previousLabel)) {								
-								finalRes.append("\t"+"I-"+label+"\n");
-								previousB = false;
-								previousI = true;
-							}
-							else {
-								finalRes.append("\t"+"B-"+label+"\n");
-								previousB = true;
-								previousI = false;
-							}
-						}
 						else {
 							label = currentToken.replace("<","").replace(">","");
-							finalRes.append("\t"+"B-"+label+"\n");
+							answerTag = "B-"+label;
 							previousB = true;
 							previousI = false;
 						}
@@ -386,39 +531,112 @@ public class BiotechEntityTrainer extends AbstractTrainer {
 						consumed = true;
 					ind = ind+1;	
 				}
+				answerTags.add(answerTag);
 				n++;
 			}
+			scoreSentence(scorer, referenceReader, answerTags);
 
-			FileUtils.writeStringToFile(tmpEvalPath, finalRes.toString());
+			return scorer.report();
+		}
+		finally {
+			rawReader.close();
+			referenceReader.close();
+			labelledTokens.close();
+		}
+	}
 
-			// we call the evaluation script as external process
-			try {
-				String cmd = evalDataF.getAbsolutePath() + "/NLPBA-Genia4ERtest/evalIOB2.pl";
-				ProcessBuilder builder = new ProcessBuilder(cmd, 
-					evalDataF.getAbsolutePath()+"/Genia4EReval1.iob2", 
-					tmpEvalPath.getAbsolutePath());
-					
-				System.out.println(cmd + " " + evalDataF.getAbsolutePath()+"/Genia4EReval1.iob2" + " " 
-					+ tmpEvalPath.getAbsolutePath());	
-					 
-				builder.redirectErrorStream(true);
-				Process process = builder.start();
-				final BufferedReader reader = 
-					new BufferedReader(new InputStreamReader(process.getInputStream()));
-				line = null;
-				while ((line = reader.readLine()) != null) {
-					report.append(line + "\n");
+	/**
+	 * Score the answer tags of a sentence against the next reference sentence, and clear them.
+	 */
+	private static void scoreSentence(IOB2Scorer scorer, BufferedReader referenceReader, 
+			List<String> answerTags) throws IOException {
+		if (answerTags.isEmpty())
+			return;
+		scorer.addSentence(IOB2Scorer.readBlock(referenceReader), answerTags);
+		answerTags.clear();
+	}
+
+	/**
+	 * Labelled token lines of the sentences of the evaluation files, the sentences being 
+	 * labelled by batches as the lines are consumed (the parser has been trained on 
+	 * sentences, so each sentence is labelled as a distinct sequence).
+	 */
+	private final class LabelledTokens {
+		private final BiotechParser parser;
+		private final File[] files;
+		private int fileIndex = 0;
+		private SentenceReader reader = null;
+
+		// labelled result of the current batch and position of the next line
+		private String result = "";
+		private int pos = 0;
+
+		LabelledTokens(BiotechParser parser, File[] files) {
+			this.parser = parser;
+			this.files = files;
+		}
+
+		/**
+		 * The next non empty labelled line, null when all the sentences are consumed.
+		 */
+		String nextLine() throws IOException {
+			while (true) {
+				while (pos < result.length()) {
+					int end = result.indexOf('\n', pos);
+					if (end == -1)
+						end = result.length();
+					String line = result.substring(pos, end);
+					pos = end + 1;
+					if (line.length() > 0)
+						return line;
 				}
+				if (!labelNextBatch())
+					return null;
 			}
-			catch (IOException e) {
-				throw new GrobidException("Failed to run the external JNLPBA evaluation script.", e);		
+		}
+
+		private boolean labelNextBatch() throws IOException {
+			StringBuilder batch = new StringBuilder();
+			int nbSentences = 0;
+			while (nbSentences < EVAL_BATCH_SIZE) {
+				TrainingSentence sentence = nextSentence();
+				if (sentence == null)
+					break;
+				if (sentence.tokens.isEmpty())
+					continue;
+				batch.append(sentenceFeatures(sentence));
+				if (!sentence.ended)
+					batch.append("\n");
+				nbSentences++;
 			}
+			if (nbSentences == 0)
+				return false;
+			result = parser.label(batch.toString());
+			if (result == null)
+				result = "";
+			pos = 0;
+			return true;
+		}
 
-			return report.toString();
+		private TrainingSentence nextSentence() throws IOException {
+			while (true) {
+				if (reader == null) {
+					if (fileIndex == files.length)
+						return null;
+					reader = new SentenceReader(files[fileIndex++]);
+				}
+				TrainingSentence sentence = reader.next();
+				if (sentence != null)
+					return sentence;
+				reader.close();
+				reader = null;
+			}
+		}
+
+		void close() throws IOException {
+			if (reader != null)
+				reader.close();
 		}
-		catch (Exception e) {
-            throw new GrobidException("An exception occurred while evaluating Grobid.", e);
-        }		 
 	}
 
     /**
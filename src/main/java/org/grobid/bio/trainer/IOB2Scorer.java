@@ -0,0 +1,432 @@
+package org.grobid.trainer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.grobid.core.exceptions.GrobidException;
+
+/**
+ * Scorer of the identification of objects encoded in the IOB2 tagging scheme, giving the same
+ * counts and report as the evaluation script evalIOB2.pl of the JNLPBA 2004 shared task
+ * (Jin-Dong Kim), without external process.
+ *
+ * The sentences are added one by one, as sequences of reference and answer tags, the tags
+ * being converted into the IOBES scheme. For each answer object, the scorer counts the fully
+ * correct answers and the answers with a correct left or right boundary, with and without the
+ * class information, overall and per class.
+ *
+ * @author Patrice Lopez
+ */
+public class IOB2Scorer {
+
+    /**
+     * Counts for one class of objects.
+     */
+    public static final class Counts {
+        int ref = 0;
+        int ans = 0;
+        int crt = 0;
+        int bcrt = 0;
+        int left = 0;
+        int bleft = 0;
+        int right = 0;
+        int bright = 0;
+
+        public int getNbObjects() {
+            return ref;
+        }
+
+        public int getNbAnswers() {
+            return ans;
+        }
+
+        public int getNbCorrect() {
+            return crt;
+        }
+
+        public int getNbCorrectLeft() {
+            return left;
+        }
+
+        public int getNbCorrectRight() {
+            return right;
+        }
+
+        public int getNbCorrectWithoutClass() {
+            return bcrt;
+        }
+
+        public int getNbCorrectLeftWithoutClass() {
+            return bleft;
+        }
+
+        public int getNbCorrectRightWithoutClass() {
+            return bright;
+        }
+    }
+
+    private static final int ANS = 0;
+    private static final int CRT = 1;
+    private static final int BCRT = 2;
+    private static final int LEFT = 3;
+    private static final int BLEFT = 4;
+    private static final int RIGHT = 5;
+    private static final int BRIGHT = 6;
+
+    private int nbTags = 0;
+    private int nbCorrectTags = 0;
+    private int nbCorrectIOBs = 0;
+
+    private final Counts total = new Counts();
+    // per class, the classes of the reference objects being reported
+    private final Map<String, Counts> classCounts = new LinkedHashMap<String, Counts>();
+    private final Map<String, Counts> answerOnlyClassCounts = new LinkedHashMap<String, Counts>();
+    private final List<String> referenceClasses = new ArrayList<String>();
+
+    // weight of the counted objects, 0 until a first reference object is found as in the script
+    private int numLexs = 0;
+
+    /**
+     * Add the tags of a sentence.
+     *
+     * @param referenceTags the expected IOB2 tags
+     * @param answerTags    the obtained IOB2 tags, as many as the expected tags
+     */
+    public void addSentence(List<String> referenceTags, List<String> answerTags) {
+        if (referenceTags.size() != answerTags.size())
+            throw new GrobidException("the number of tokens in a sentence is different.");
+        String[] answers = toIOBES(answerTags);
+        String[] references = toIOBES(referenceTags);
+
+        boolean match = false;
+        boolean bmatch = false;
+        for (int i = 0; i < answers.length; i++) {
+            String atag = answers[i];
+            char aiob = iob(atag);
+            String acls = tagClass(atag);
+
+            String rtag = references[i];
+            char riob = iob(rtag);
+            String rcls = tagClass(rtag);
+
+            nbTags++;
+            if (aiob == riob)
+                nbCorrectIOBs++;
+            if (atag.equals(rtag))
+                nbCorrectTags++;
+
+            if ( (riob == 'S') || (riob == 'B') ) {
+                numLexs = 1;
+                total.ref += numLexs;
+                counts(rcls, true).ref += numLexs;
+            }
+
+            if ( (aiob == 'S') || (aiob == 'B') )
+                count(ANS, acls);
+
+            boolean sameClass = acls.equals(rcls);
+            if ( (aiob == 'S') && (riob == 'S') ) {
+                count(BCRT, acls);
+                count(BLEFT, acls);
+                count(BRIGHT, acls);
+                if (sameClass) {
+                    count(CRT, acls);
+                    count(LEFT, acls);
+                    count(RIGHT, acls);
+                }
+            }
+
+            if ( (aiob == 'S') && (riob == 'E') ) {
+                count(BRIGHT, acls);
+                if (sameClass)
+                    count(RIGHT, acls);
+            }
+
+            if ( (aiob == 'S') && (riob == 'B') ) {
+                count(BLEFT, acls);
+                if (sameClass)
+                    count(LEFT, acls);
+            }
+
+            if ( (aiob == 'B') && (riob == 'S') ) {
+                count(BLEFT, acls);
+                if (sameClass)
+                    count(LEFT, acls);
+            }
+
+            if ( (aiob == 'B') && (riob == 'B') ) {
+                count(BLEFT, acls);
+                bmatch = true;
+                if (sameClass) {
+                    count(LEFT, acls);
+                    match = true;
+                }
+            }
+
+            if (aiob != riob)
+                bmatch = false;
+            if (!atag.equals(rtag))
+                match = false;
+
+            if ( (aiob == 'O') || (riob == 'O') ) {
+                match = false;
+                bmatch = false;
+            }
+
+            if ( (aiob == 'E') && (riob == 'S') ) {
+                count(BRIGHT, acls);
+                if (sameClass)
+                    count(RIGHT, acls);
+            }
+
+            if ( (aiob == 'E') && (riob == 'E') ) {
+                if (bmatch)
+                    count(BCRT, acls);
+                count(BRIGHT, acls);
+                if (sameClass) {
+                    if (match)
+                        count(CRT, acls);
+                    count(RIGHT, acls);
+                }
+            }
+        }
+    }
+
+    private void count(int counter, String cls) {
+        increment(total, counter);
+        increment(counts(cls, false), counter);
+    }
+
+    private void increment(Counts counts, int counter) {
+        switch (counter) {
+            case ANS:
+                counts.ans += numLexs;
+                break;
+            case CRT:
+                counts.crt += numLexs;
+                break;
+            case BCRT:
+                counts.bcrt += numLexs;
+                break;
+            case LEFT:
+                counts.left += numLexs;
+                break;
+            case BLEFT:
+                counts.bleft += numLexs;
+                break;
+            case RIGHT:
+                counts.right += numLexs;
+                break;
+            case BRIGHT:
+                counts.bright += numLexs;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Counts counts(String cls, boolean reference) {
+        Counts counts = classCounts.get(cls);
+        if (counts == null) {
+            counts = answerOnlyClassCounts.remove(cls);
+            if (counts == null)
+                counts = new Counts();
+            if (reference) {
+                classCounts.put(cls, counts);
+                referenceClasses.add(cls);
+            } else {
+                answerOnlyClassCounts.put(cls, counts);
+            }
+        }
+        return counts;
+    }
+
+    private static char iob(String tag) {
+        return (tag.length() > 0) ? tag.charAt(0) : '\0';
+    }
+
+    private static String tagClass(String tag) {
+        if ( (tag.length() > 1) && (tag.charAt(1) == '-') )
+            return tag.substring(2);
+        return "";
+    }
+
+    /**
+     * Conversion of IOB2 tags into IOBES tags: an I (resp. B) tag not followed by an I tag
+     * becomes E (resp. S).
+     */
+    static String[] toIOBES(List<String> tags) {
+        String[] ntags = new String[tags.size()];
+        for (int i = 0; i < ntags.length; i++) {
+            String tag = tags.get(i);
+            ntags[i] = tag;
+            char first = iob(tag);
+            if ( (first == 'I') || (first == 'B') ) {
+                boolean last = (i == ntags.length - 1) || (iob(tags.get(i + 1)) != 'I');
+                if (last)
+                    ntags[i] = ((first == 'I') ? "E" : "S") + tag.substring(1);
+            }
+        }
+        return ntags;
+    }
+
+    public int getNbTags() {
+        return nbTags;
+    }
+
+    public int getNbCorrectTags() {
+        return nbCorrectTags;
+    }
+
+    public int getNbCorrectIOBs() {
+        return nbCorrectIOBs;
+    }
+
+    /**
+     * Overall counts.
+     */
+    public Counts getTotal() {
+        return total;
+    }
+
+    /**
+     * Counts for the classes of the reference objects.
+     */
+    public Map<String, Counts> getClassCounts() {
+        return classCounts;
+    }
+
+    /**
+     * The report of the evaluation, in the same format as evalIOB2.pl.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("\n[Tagging Performance]\n");
+        report.append("# of tags: ").append(nbTags).append(",\t correct tags: ").append(nbCorrectTags)
+            .append(",\t correct IOBs: ").append(nbCorrectIOBs).append("\n");
+        report.append(String.format(Locale.US, "precision with class info: %6.4f,\t w/o class info: %6.4f\n",
+            ratio(nbCorrectTags, nbTags), ratio(nbCorrectIOBs, nbTags)));
+
+        report.append("\n[Object Identification Performance]\n");
+        report.append("# of OBJECTs: ").append(total.ref).append(",\t ANSWERs: ").append(total.ans).append(".\n");
+        report.append("\n# (recall / precision / f-score) of ...\n");
+
+        if (total.ref == 0) {
+            report.append("[!]No object to identify.\n");
+            return report.toString();
+        }
+        if (total.ans == 0) {
+            report.append("[!]No object identified.\n");
+            return report.toString();
+        }
+        appendScores(report, total);
+        report.append("\n");
+
+        if (classCounts.size() > 1) {
+            for (String cls : referenceClasses) {
+                Counts counts = classCounts.get(cls);
+                report.append(String.format(Locale.US, "\n[<%s> Identification Performance]\n", cls));
+                report.append("# of OBJECTs: ").append(counts.ref).append(",\t ANSWERs: ").append(counts.ans)
+                    .append(".\n");
+                report.append("\n# (recall / precision / f-score) of ...\n");
+                appendScores(report, counts);
+                report.append("\n");
+            }
+        }
+        return report.toString();
+    }
+
+    private static void appendScores(StringBuilder report, Counts counts) {
+        appendScore(report, "     FULLY CORRECT answer with class info: ", counts.crt, counts);
+        appendScore(report, "    correct LEFT boundary with class info: ", counts.left, counts);
+        appendScore(report, "   correct RIGHT boundary with class info: ", counts.right, counts);
+    }
+
+    private static void appendScore(StringBuilder report, String title, int correct, Counts counts) {
+        double recall = ratio(correct, counts.ref);
+        double precision = ratio(correct, counts.ans);
+        double fscore = (precision + recall == 0) ? 0 : 2 * precision * recall / (precision + recall);
+        report.append(title).append(correct)
+            .append(String.format(Locale.US, " (%6.4f / %6.4f / %6.4f),\n", recall, precision, fscore));
+    }
+
+    private static double ratio(int a, int b) {
+        return (b == 0) ? 0 : ((double) a) / b;
+    }
+
+    /**
+     * Add the sentences of a reference and of an answer in the IOB2 file format (one token
+     * per line with its tag as last field separated by tabulations, sentences separated by
+     * empty lines or ###MEDLINE lines).
+     */
+    public void addSentences(Reader reference, Reader answer) throws IOException {
+        BufferedReader referenceReader = new BufferedReader(reference);
+        BufferedReader answerReader = new BufferedReader(answer);
+        List<String> answerTags;
+        while (!(answerTags = readBlock(answerReader)).isEmpty()) {
+            List<String> referenceTags = readBlock(referenceReader);
+            addSentence(referenceTags, answerTags);
+        }
+    }
+
+    /**
+     * The tags (last field) of the next block of lines of an IOB2 file, empty at the end
+     * of the file.
+     */
+    static List<String> readBlock(BufferedReader reader) throws IOException {
+        List<String> tags = new ArrayList<String>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if ( (line.length() == 0) || line.startsWith("###MEDLIN") ) {
+                if (tags.isEmpty())
+                    continue;
+                break;
+            }
+            tags.add(lastField(line));
+        }
+        return tags;
+    }
+
+    /**
+     * Last non empty field of a line, the fields being separated by tabulations.
+     */
+    static String lastField(String line) {
+        int end = line.length();
+        while ( (end > 0) && (line.charAt(end - 1) == '\t') )
+            end--;
+        int start = line.lastIndexOf('\t', end - 1) + 1;
+        return line.substring(start, end);
+    }
+
+    /**
+     * Command line evaluation, as evalIOB2.pl with the tags as last field of both files.
+     *
+     * @param args the reference file and the answer file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: IOB2Scorer ref_file answer_file");
+            return;
+        }
+        IOB2Scorer scorer = new IOB2Scorer();
+        Reader reference = new InputStreamReader(new FileInputStream(new File(args[0])), "UTF-8");
+        Reader answer = new InputStreamReader(new FileInputStream(new File(args[1])), "UTF-8");
+        try {
+            scorer.addSentences(reference, answer);
+        } finally {
+            reference.close();
+            answer.close();
+        }
+        System.out.print(scorer.report());
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.grobid.trainer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.grobid.core.exceptions.GrobidResourceException;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Cache of the features generated for the files of a training or evaluation corpus, so that
+ * the features of a file are generated again only when the file or the feature set changes.
+ *
+ * The features of a file are stored in the cache directory under a key made of the checksum
+ * of the file content and the feature set version ({@link FeaturesWriterBiotechEntity#FEATURE_SET_VERSION}).
+ * Outdated entries are simply not used anymore.
+ *
+ * @author Patrice Lopez
+ */
+public class TrainingFeaturesCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrainingFeaturesCache.class);
+
+    /**
+     * Generation of the features of a corpus file.
+     */
+    public interface FeaturesGenerator {
+        void writeFeatures(File source, Writer writer) throws IOException;
+    }
+
+    private final File directory;
+
+    public TrainingFeaturesCache(File directory) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new GrobidResourceException("Cannot create the training features cache directory "
+                + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * The cache file for the features of a corpus file, existing or not.
+     */
+    public File cacheFile(File source) throws IOException {
+        String contentChecksum = Files.asByteSource(source).hash(Hashing.sha1()).toString();
+        String key = Hashing.sha1().hashString(contentChecksum + ":"
+            + FeaturesWriterBiotechEntity.FEATURE_SET_VERSION, Charsets.UTF_8).toString();
+        return new File(directory, key + ".features");
+    }
+
+    /**
+     * Write the features of a corpus file, taken from the cache when available, otherwise
+     * generated and stored in the cache.
+     *
+     * @return true if the features were in the cache
+     */
+    public boolean writeFeatures(File source, Writer writer, FeaturesGenerator generator) throws IOException {
+        File cached = cacheFile(source);
+        boolean hit = cached.exists();
+        if (!hit) {
+            File tmpFile = new File(cached.getAbsolutePath() + ".tmp");
+            Writer cacheWriter = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tmpFile), Charsets.UTF_8), 1 << 16);
+            try {
+                generator.writeFeatures(source, cacheWriter);
+            } finally {
+                cacheWriter.close();
+            }
+            if (!tmpFile.renameTo(cached)) {
+                // the features are still usable from the temporary file
+                LOGGER.warn("Cannot rename " + tmpFile.getPath() + " to " + cached.getPath());
+                copy(tmpFile, writer);
+                tmpFile.delete();
+                return false;
+            }
+        } else {
+            LOGGER.debug("Features of " + source.getPath() + " taken from " + cached.getPath());
+        }
+        copy(cached, writer);
+        return hit;
+    }
+
+    private static void copy(File file, Writer writer) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+        try {
+            char[] buffer = new char[1 << 16];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+}
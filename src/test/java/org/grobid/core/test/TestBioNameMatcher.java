@@ -0,0 +1,216 @@
+package org.grobid.core.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.lexicon.BioNameMatcher;
+import org.grobid.core.lexicon.FastMatcher;
+import org.grobid.core.utilities.OffsetPosition;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBioNameMatcher {
+
+	private static final BioNameMatcher matcher = BioNameMatcher.build(Arrays.asList(
+		"NF-kappa B", 
+		"kappa B site", 
+		"T cell", 
+		"T cell receptor", 
+		"receptor",
+		"IL-2"));
+
+	private static List<LayoutToken> tokens(String... texts) {
+		List<LayoutToken> tokens = new ArrayList<LayoutToken>();
+		for(String text : texts) {
+			tokens.add(new LayoutToken(text));
+		}
+		return tokens;
+	}
+
+	private static String toString(List<OffsetPosition> positions) {
+		StringBuilder res = new StringBuilder();
+		for(OffsetPosition position : positions) {
+			res.append(position.start).append("-").append(position.end).append(" ");
+		}
+		return res.toString().trim();
+	}
+
+	@Test
+	public void testLongestMatch() throws Exception {
+		// "the T cell receptor binds"
+		List<LayoutToken> input = tokens("the", " ", "T", " ", "cell", " ", "receptor", " ", "binds");
+		assertEquals("2-6", toString(matcher.matchLayoutToken(input)));
+	}
+
+	@Test
+	public void testLeftmostMatchAndPunctuation() throws Exception {
+		// "NF-kappa B site and IL-2", NF-kappa B and kappa B site overlap
+		List<LayoutToken> input = tokens("NF", "-", "kappa", " ", "B", " ", "site", " ", "and", " ", "IL", "-", "2");
+		assertEquals("0-4 10-12", toString(matcher.matchLayoutToken(input)));
+	}
+
+	@Test
+	public void testCaseAndFailureLinks() throws Exception {
+		// the partial match on "T cell" must not hide the following "receptor"
+		List<LayoutToken> input = tokens("t", " ", "CELL", " ", "activation", " ", "receptor");
+		assertEquals("0-2 6-6", toString(matcher.matchLayoutToken(input)));
+		assertEquals("", toString(matcher.matchLayoutToken(tokens("no", " ", "match"))));
+	}
+
+	@Test
+	public void testMatchOffsets() throws Exception {
+		// same positions on the offsets of the tokenized text as on the layout tokens
+		String text = "NF-kappa B site and IL-2";
+		BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text);
+		assertEquals("0-4 10-12", toString(matcher.match(text, tokens)));
+		assertEquals(toString(matcher.matchLayoutToken(tokens.toLayoutTokens())), 
+			toString(matcher.match(text, tokens)));
+	}
+
+	/**
+	 *  Read the sentences of a GENIA iob2 file and its entity mentions made only of letters 
+	 *  and digits, as gazetteer terms.
+	 */
+	private static void readGenia(File iob2File, List<String> sentences, Set<String> terms) throws Exception {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(iob2File), "UTF-8"));
+		try {
+			StringBuilder sentence = new StringBuilder();
+			StringBuilder mention = null;
+			boolean alphanumeric = true;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int ind = line.indexOf("\t");
+				String label = (ind == -1) ? "O" : line.substring(ind+1).trim();
+				if ( (mention != null) && !label.startsWith("I-") ) {
+					if (alphanumeric)
+						terms.add(mention.toString());
+					mention = null;
+				}
+				if ( (ind == -1) || line.startsWith("###MEDLINE") ) {
+					if (sentence.length() > 0)
+						sentences.add(sentence.toString());
+					sentence = new StringBuilder();
+					continue;
+				}
+				String token = line.substring(0, ind);
+				if (sentence.length() > 0)
+					sentence.append(" ");
+				sentence.append(token);
+				if (label.startsWith("B-")) {
+					mention = new StringBuilder();
+					alphanumeric = true;
+				}
+				if (mention != null) {
+					for (int i = 0; i < token.length(); i++) {
+						if (!Character.isLetterOrDigit(token.charAt(i)))
+							alphanumeric = false;
+					}
+					if (mention.length() > 0)
+						mention.append(" ");
+					mention.append(token);
+				}
+			}
+			if ( (mention != null) && alphanumeric )
+				terms.add(mention.toString());
+			if (sentence.length() > 0)
+				sentences.add(sentence.toString());
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private static boolean isPunctuation(String token) {
+		return (token.length() == 1) && !Character.isLetterOrDigit(token.charAt(0)) 
+			&& !Character.isWhitespace(token.charAt(0));
+	}
+
+	/**
+	 *  The FastMatcher positions reduced to the semantics of BioNameMatcher: the matches 
+	 *  going over a punctuation mark are removed, FastMatcher skipping the punctuation 
+	 *  marks, and only the leftmost-longest non-overlapping matches are kept, FastMatcher 
+	 *  returning all the occurrences of all the terms.
+	 */
+	private static List<OffsetPosition> leftmostLongest(List<OffsetPosition> positions, List<LayoutToken> tokens) {
+		List<OffsetPosition> candidates = new ArrayList<OffsetPosition>();
+		for (OffsetPosition position : positions) {
+			boolean punctuation = false;
+			for (int i = position.start; i <= position.end; i++) {
+				if (isPunctuation(tokens.get(i).getText()))
+					punctuation = true;
+			}
+			if (!punctuation)
+				candidates.add(position);
+		}
+		Collections.sort(candidates, new Comparator<OffsetPosition>() {
+			public int compare(OffsetPosition p1, OffsetPosition p2) {
+				if (p1.start != p2.start)
+					return (p1.start < p2.start) ? -1 : 1;
+				return (p1.end > p2.end) ? -1 : ((p1.end == p2.end) ? 0 : 1);
+			}
+		});
+		List<OffsetPosition> results = new ArrayList<OffsetPosition>();
+		int lastEnd = -1;
+		for (OffsetPosition position : candidates) {
+			if (position.start > lastEnd) {
+				results.add(position);
+				lastEnd = position.end;
+			}
+		}
+		return results;
+	}
+
+	@Test
+	public void testSameMatchesAsFastMatcher() throws Exception {
+		// gazetteer of the GENIA entity mentions, matched on the GENIA evaluation sentences
+		List<String> sentences = new ArrayList<String>();
+		Set<String> terms = new LinkedHashSet<String>();
+		readGenia(new File("./resources/dataset/bio/evaluation/NLPBA-Genia4ERtest/Genia4EReval1.iob2"), 
+			sentences, terms);
+		File vocabularyFile = File.createTempFile("bio-vocabulary", ".txt");
+		vocabularyFile.deleteOnExit();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(vocabularyFile), "UTF-8");
+		try {
+			for (String term : terms) {
+				writer.write(term);
+				writer.write("\n");
+			}
+		}
+		finally {
+			writer.close();
+		}
+		FastMatcher fastMatcher = new FastMatcher(vocabularyFile);
+		BioNameMatcher bioNameMatcher = BioNameMatcher.build(terms);
+
+		int nbMatches = 0;
+		for (String sentence : sentences) {
+			List<LayoutToken> tokens = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(sentence);
+			List<OffsetPosition> positions = bioNameMatcher.matchLayoutToken(tokens);
+			assertEquals(sentence, toString(leftmostLongest(fastMatcher.matchLayoutToken(tokens), tokens)), 
+				toString(positions));
+			nbMatches += positions.size();
+		}
+		assertTrue(nbMatches > 1000);
+	}
+
+}
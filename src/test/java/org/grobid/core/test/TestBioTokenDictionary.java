@@ -0,0 +1,39 @@
+package org.grobid.core.test;
+
+import java.util.Arrays;
+
+import org.grobid.core.lexicon.BioTokenDictionary;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBioTokenDictionary {
+
+	private static final BioTokenDictionary dictionary = 
+		new BioTokenDictionary(Arrays.asList("kappa", "receptor", "il", "lymphocytes"));
+
+	@Test
+	public void testLookup() throws Exception {
+		assertTrue(dictionary.contains("receptor"));
+		assertFalse(dictionary.contains("Receptor"));
+		assertFalse(dictionary.contains("recept"));
+		assertEquals(1, dictionary.indexOf("receptor", 0, 8));
+		assertEquals(-1, dictionary.indexOf("cell", 0, 4));
+		assertEquals("lymphocytes", dictionary.get(3));
+	}
+
+	@Test
+	public void testSliceLookup() throws Exception {
+		String block = "NF-KAPPA\t<biotech>";
+		assertFalse(dictionary.contains(block, 3, 3 + 5));
+		assertEquals(0, dictionary.indexOfIgnoreCase(block, 3, 3 + 5));
+		assertEquals(2, dictionary.indexOfIgnoreCase(new StringBuilder("IL-2"), 0, 2));
+		assertEquals(-1, dictionary.indexOfIgnoreCase(block, 0, 2));
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.grobid.core.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.layout.LayoutToken;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBioTokenizer {
+
+	private static String toString(BioTokenizer.Tokens tokens) {
+		StringBuilder res = new StringBuilder();
+		for(int i = 0; i < tokens.size(); i++) {
+			res.append("[").append(tokens.isSpace(i) ? "_" : tokens.text(i)).append("]");
+		}
+		return res.toString();
+	}
+
+	@Test
+	public void testTokenize() throws Exception {
+		String text = "NF-kappa B\tin (human) T-cells.\n";
+		BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text);
+		assertEquals("[NF][-][kappa][_][B][_][in][_][(][human][)][_][T][-][cells][.][_]", toString(tokens));
+		// offsets in the text
+		assertEquals(3, tokens.start(2));
+		assertEquals(8, tokens.end(2));
+		assertTrue(tokens.isSpace(5));
+		assertEquals('\t', text.charAt(tokens.start(5)));
+
+		assertEquals(0, BioTokenizer.tokenize("").size());
+		assertEquals("[_][_]", toString(BioTokenizer.tokenize("  ")));
+		assertEquals(Arrays.asList("IL", "-", "2", "gene"), BioTokenizer.tokenizeToStrings(" IL-2  gene "));
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		BioTokenizer.Tokens tokens = new BioTokenizer.Tokens(2);
+		assertSame(tokens, BioTokenizer.tokenize("a b c d e f", tokens));
+		assertEquals(11, tokens.size());
+		assertEquals("f", tokens.text(10));
+		BioTokenizer.tokenize("x", tokens);
+		assertEquals(1, tokens.size());
+		assertEquals("x", tokens.getText());
+	}
+
+	@Test
+	public void testLayoutTokens() throws Exception {
+		BioTokenizer.Tokens tokens = BioTokenizer.tokenize("IL-2 gene");
+		List<LayoutToken> layoutTokens = tokens.toLayoutTokens();
+		assertEquals(5, layoutTokens.size());
+		assertEquals("gene", layoutTokens.get(4).getText());
+		assertEquals(5, layoutTokens.get(4).getOffset());
+
+		BioTokenizer.Tokens back = BioTokenizer.Tokens.fromLayoutTokens(layoutTokens);
+		assertEquals("IL-2 gene", back.getText().toString());
+		assertEquals(toString(tokens), toString(back));
+		assertFalse(back.isSpace(1));
+	}
+
+}
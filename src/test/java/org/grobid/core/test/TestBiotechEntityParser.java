@@ -1,15 +1,25 @@
 package org.grobid.core.test;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.engines.BiotechExtractionService;
 import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.engines.BiotechResultCache;
+import org.grobid.core.engines.BiotechStreamingExtractor;
 import org.grobid.core.exceptions.GrobidException;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  *  @author Patrice Lopez
  */
@@ -48,4 +58,227 @@ public class TestBiotechEntityParser extends EngineTest {
 		}
 	}
 	
-}
\ No newline at end of file
+	/**
+	 *  Compare the batch extraction with the text by text extraction on the sentences of the 
+	 *  GENIA evaluation raw file, and report the throughput of both in documents/sec.
+	 */
+	@Test
+	public void testBiotechEntityParserBatch() throws Exception {
+		List<String> texts = readGeniaSentences(
+			new File("./resources/dataset/bio/evaluation/NLPBA-Genia4ERtest/Genia4EReval1.raw"), 500);
+		BiotechParser parser = new BiotechParser();
+		
+		// warm-up
+		parser.extractBiotechEntities(texts.get(0));
+		
+		long start = System.currentTimeMillis();
+		List<List<BiotechEntity>> singleResults = new ArrayList<List<BiotechEntity>>();
+		for(String text : texts) {
+			singleResults.add(parser.extractBiotechEntities(text));
+		}
+		long singleTime = Math.max(1, System.currentTimeMillis() - start);
+		
+		start = System.currentTimeMillis();
+		List<List<BiotechEntity>> batchResults = parser.extractBiotechEntities(texts);
+		long batchTime = Math.max(1, System.currentTimeMillis() - start);
+		
+		System.out.println(texts.size() + " documents - single: " + (texts.size() * 1000.0 / singleTime) 
+			+ " docs/sec, batch: " + (texts.size() * 1000.0 / batchTime) + " docs/sec");
+		
+		assertEquals(singleResults.size(), batchResults.size());
+		for(int i=0; i<singleResults.size(); i++) {
+			assertEquals(toString(singleResults.get(i)), toString(batchResults.get(i)));
+		}
+	}
+	
+	/**
+	 *  The parallel extraction service must give the sequential results, in input order.
+	 */
+	@Test
+	public void testBiotechExtractionService() throws Exception {
+		List<String> texts = readGeniaSentences(
+			new File("./resources/dataset/bio/evaluation/NLPBA-Genia4ERtest/Genia4EReval1.raw"), 200);
+		BiotechParser parser = new BiotechParser();
+		List<List<BiotechEntity>> sequentialResults = new ArrayList<List<BiotechEntity>>();
+		for(String text : texts) {
+			sequentialResults.add(parser.extractBiotechEntities(text));
+		}
+		
+		BiotechExtractionService service = new BiotechExtractionService(4);
+		try {
+			List<List<BiotechEntity>> parallelResults = service.extract(texts);
+			assertEquals(sequentialResults.size(), parallelResults.size());
+			for(int i=0; i<sequentialResults.size(); i++) {
+				assertEquals(toString(sequentialResults.get(i)), toString(parallelResults.get(i)));
+			}
+		}
+		finally {
+			service.close();
+		}
+	}
+	
+	/**
+	 *  True if a GENIA sentence is segmented as one sentence by the streaming extractor: 
+	 *  ended by a '.', without other sentence end and not starting with a lowercase letter. 
+	 */
+	private static boolean isSingleSentence(String sentence) {
+		if ( (sentence.length() < 2) || !sentence.endsWith(".") || Character.isLowerCase(sentence.charAt(0)) )
+			return false;
+		for(int i=0; i<sentence.length()-1; i++) {
+			char c = sentence.charAt(i);
+			if ( ((c == '.') || (c == '!') || (c == '?')) && Character.isWhitespace(sentence.charAt(i+1)) )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 *  Add the entities of a text extracted by the parser, with offsets shifted to the 
+	 *  position of the text in the document. 
+	 */
+	private static void addEntities(BiotechParser parser, String text, int offset, List<BiotechEntity> entities) 
+		throws Exception {
+		for(BiotechEntity entity : parser.extractBiotechEntities(text)) {
+			entity.setOffsetStart(entity.getOffsetStart() + offset);
+			entity.setOffsetEnd(entity.getOffsetEnd() + offset);
+			entities.add(entity);
+		}
+	}
+
+	/**
+	 *  The streaming extraction of a long document made of paragraphs must give the entities 
+	 *  of each sentence extracted separately by the parser, with offsets in the whole document. 
+	 */
+	@Test
+	public void testBiotechStreamingExtractor() throws Exception {
+		List<String> texts = new ArrayList<String>();
+		for(String sentence : readGeniaSentences(
+				new File("./resources/dataset/bio/evaluation/NLPBA-Genia4ERtest/Genia4EReval1.raw"), 300)) {
+			if (isSingleSentence(sentence))
+				texts.add(sentence);
+		}
+		BiotechParser parser = new BiotechParser();
+		StringBuilder document = new StringBuilder();
+		List<BiotechEntity> expected = new ArrayList<BiotechEntity>();
+
+		// a first paragraph longer than the window without sentence end, which is cut at its 
+		// last white space in the window
+		StringBuilder longParagraph = new StringBuilder();
+		for(String sentence : texts) {
+			if (longParagraph.length() > BiotechStreamingExtractor.DEFAULT_MAX_WINDOW + 500)
+				break;
+			if (longParagraph.length() > 0)
+				longParagraph.append(" ; ");
+			longParagraph.append(sentence.substring(0, sentence.length()-1).trim());
+		}
+		int cut = longParagraph.lastIndexOf(" ", BiotechStreamingExtractor.DEFAULT_MAX_WINDOW - 1);
+		document.append(longParagraph);
+		addEntities(parser, longParagraph.substring(0, cut), 0, expected);
+		addEntities(parser, longParagraph.substring(cut + 1), cut + 1, expected);
+
+		// paragraphs of 3 GENIA sentences
+		for(int i=0; i<texts.size(); i+=3) {
+			document.append("\n\n");
+			for(int j=i; (j<i+3) && (j<texts.size()); j++) {
+				if (j > i)
+					document.append(" ");
+				int offset = document.length();
+				document.append(texts.get(j));
+				addEntities(parser, texts.get(j), offset, expected);
+			}
+		}
+		
+		BiotechStreamingExtractor extractor = new BiotechStreamingExtractor(parser);
+		assertEquals(toString(expected), toString(extractor.extract(document.toString())));
+
+		// small batches to have several deliveries
+		final List<BiotechEntity> streamed = new ArrayList<BiotechEntity>();
+		extractor = new BiotechStreamingExtractor(parser, 
+			BiotechStreamingExtractor.DEFAULT_MAX_WINDOW, 16);
+		long length = extractor.extract(new StringReader(document.toString()), 
+			new BiotechStreamingExtractor.EntityHandler() {
+				public void onEntities(List<BiotechEntity> entities) {
+					streamed.addAll(entities);
+				}
+			});
+		
+		assertEquals(document.length(), length);
+		assertEquals(toString(expected), toString(streamed));
+	}
+	
+	/**
+	 *  Cached results must be the same as the computed ones, with offsets relative to each 
+	 *  text. 
+	 */
+	@Test
+	public void testBiotechResultCache() throws Exception {
+		List<String> sentences = readGeniaSentences(
+			new File("./resources/dataset/bio/evaluation/NLPBA-Genia4ERtest/Genia4EReval1.raw"), 50);
+		List<String> texts = new ArrayList<String>();
+		for(String sentence : sentences) {
+			texts.add(sentence);
+			texts.add("  " + sentence + "\n");
+		}
+		BiotechParser parser = new BiotechParser();
+		List<List<BiotechEntity>> expected = parser.extractBiotechEntities(texts);
+		
+		BiotechResultCache cache = new BiotechResultCache();
+		parser.setResultCache(cache);
+		try {
+			List<List<BiotechEntity>> results = parser.extractBiotechEntities(texts);
+			for(int i=0; i<texts.size(); i++) {
+				assertEquals(toString(expected.get(i)), toString(results.get(i)));
+				assertEquals(toString(expected.get(i)), toString(parser.extractBiotechEntities(texts.get(i))));
+			}
+			// the text by text extractions are all served by the cache
+			assertEquals(texts.size(), cache.getStats().hitCount());
+		}
+		finally {
+			parser.setResultCache(null);
+		}
+	}
+	
+	/**
+	 *  Rebuild the sentences of a GENIA raw file (one token per line, sentences separated by 
+	 *  an empty line). 
+	 */
+	public static List<String> readGeniaSentences(File rawFile, int max) throws Exception {
+		List<String> sentences = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(rawFile), "UTF-8"));
+		try {
+			StringBuilder sentence = new StringBuilder();
+			String line;
+			while ( ((line = reader.readLine()) != null) && (sentences.size() < max) ) {
+				line = line.trim();
+				if (line.length() == 0) {
+					if (sentence.length() > 0) 
+						sentences.add(sentence.toString());
+					sentence = new StringBuilder();
+					continue;
+				}
+				if (line.startsWith("###MEDLINE"))
+					continue;
+				if (sentence.length() > 0)
+					sentence.append(" ");
+				sentence.append(line);
+			}
+			if ( (sentence.length() > 0) && (sentences.size() < max) )
+				sentences.add(sentence.toString());
+		}
+		finally {
+			reader.close();
+		}
+		return sentences;
+	}
+	
+	private static String toString(List<BiotechEntity> entities) {
+		if (entities == null)
+			return "null";
+		StringBuilder res = new StringBuilder();
+		for(BiotechEntity entity : entities) {
+			res.append(entity.toString()).append("\n");
+		}
+		return res.toString();
+	}
+	
+}
@@ -0,0 +1,79 @@
+package org.grobid.core.test;
+
+import java.util.List;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.service.BiotechJson;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBiotechEntitySpans {
+
+	@Test
+	public void testSpans() throws Exception {
+		BiotechEntitySpans spans = new BiotechEntitySpans(1);
+		spans.add(BiotechEntitySpans.PROTEIN, 0, 4);
+		spans.add(spans.typeCode("<dna>"), 5, 9);
+		spans.add(spans.typeCode("<gene>"), 10, 12);
+		assertEquals(3, spans.size());
+		assertEquals(BiotechEntitySpans.DNA, spans.type(1));
+		assertEquals(5, spans.typeCode("<gene>"));
+		assertEquals("<gene>", spans.rawName(2));
+		assertEquals("gene", spans.typeLabel(spans.type(2)));
+		assertEquals("cell_line", spans.typeLabel(BiotechEntitySpans.CELL_LINE));
+
+		BiotechEntitySpans.Cursor cursor = spans.cursor();
+		StringBuilder res = new StringBuilder();
+		while (cursor.next()) {
+			res.append(cursor.rawName()).append(" ").append(cursor.start()).append(" ").append(cursor.end()).append("\n");
+		}
+		assertEquals("<protein> 0 4\n<dna> 5 9\n<gene> 10 12\n", res.toString());
+		assertFalse(cursor.next());
+
+		List<BiotechEntity> entities = spans.toEntities(2);
+		assertEquals("<gene>\t12\t14", entities.get(2).toString());
+		BiotechEntitySpans copy = BiotechEntitySpans.fromEntities(entities);
+		copy.shift(-2);
+		assertEquals(spans.toString(), copy.toString());
+		assertEquals(spans.toString(), spans.copy(0).toString());
+
+		spans.clear();
+		assertTrue(spans.isEmpty());
+		assertFalse(cursor.next());
+	}
+
+	@Test
+	public void testResultExtraction() throws Exception {
+		String text = "NFAT gene of \"p50\"";
+		BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text);
+		String result =
+			"NFAT\tB-<DNA>\n" +
+			"gene\tI-<DNA>\n" +
+			"of\tO\n" +
+			"\"\tO\n" +
+			"p50\tB-<protein>\n" +
+			"\"\tO\n";
+		BiotechEntitySpans spans = new BiotechEntitySpans();
+		BiotechParser.resultExtraction(result, 0, result.length(), tokens, spans);
+		assertEquals("<dna>\t0\t9\n<protein>\t14\t17\n", spans.toString());
+
+		StringBuilder json = new StringBuilder();
+		BiotechJson.appendSpans(json, text, spans);
+		assertEquals("[{\"type\":\"dna\",\"start\":0,\"end\":9,\"text\":\"NFAT gene\"}," +
+			"{\"type\":\"protein\",\"start\":14,\"end\":17,\"text\":\"p50\"}]", json.toString());
+		json.setLength(0);
+		BiotechJson.appendEntities(json, text, spans.toEntities());
+		assertEquals("[{\"type\":\"dna\",\"start\":0,\"end\":9,\"text\":\"NFAT gene\"}," +
+			"{\"type\":\"protein\",\"start\":14,\"end\":17,\"text\":\"p50\"}]", json.toString());
+	}
+
+}
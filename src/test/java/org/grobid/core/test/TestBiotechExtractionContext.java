@@ -0,0 +1,60 @@
+package org.grobid.core.test;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.engines.BiotechExtractionContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBiotechExtractionContext {
+
+	@Test
+	public void testRecycling() throws Exception {
+		BiotechExtractionContext context = BiotechExtractionContext.acquire();
+		BioTokenizer.Tokens tokens = BioTokenizer.tokenize("IL-2 gene", context.getTokens(0));
+		context.getFeaturesWriter().addToken(tokens.text(0), "<biotech>");
+		assertTrue(context.getFeatures().length() > 0);
+		boolean[] flags = context.getLabelledFlags(3);
+		flags[1] = true;
+
+		// a nested call gets its own context
+		BiotechExtractionContext nested = BiotechExtractionContext.acquire();
+		assertNotSame(context, nested);
+		nested.release();
+		context.release();
+
+		// the buffers are reused by the next call of the thread, cleared
+		BiotechExtractionContext next = BiotechExtractionContext.acquire();
+		assertSame(context, next);
+		assertSame(tokens, next.getTokens(0));
+		assertEquals(0, next.getTokens(0).size());
+		assertEquals("", next.getTokens(0).getText().toString());
+		assertEquals(0, next.getFeatures().length());
+		assertFalse(next.getLabelledFlags(3)[1]);
+		next.release();
+	}
+
+	@Test
+	public void testLargeBuffersDropped() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < BiotechExtractionContext.DEFAULT_MAX_RETAINED_TOKENS; i++)
+			text.append("a ");
+		BiotechExtractionContext context = BiotechExtractionContext.acquire();
+		BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text, context.getTokens(0));
+		assertTrue(tokens.capacity() > BiotechExtractionContext.DEFAULT_MAX_RETAINED_TOKENS);
+		context.release();
+
+		context = BiotechExtractionContext.acquire();
+		assertNotSame(tokens, context.getTokens(0));
+		assertTrue(context.getTokens(0).capacity() <= BiotechExtractionContext.DEFAULT_MAX_RETAINED_TOKENS);
+		context.release();
+	}
+
+}
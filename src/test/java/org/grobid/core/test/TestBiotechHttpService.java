@@ -0,0 +1,208 @@
+package org.grobid.core.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.engines.tagging.GenericTagger;
+import org.grobid.service.BiotechHttpService;
+import org.grobid.service.BiotechJson;
+import org.grobid.service.BiotechRequestBatcher;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBiotechHttpService {
+
+	/**
+	 * Parser finding the "IL-2" proteins, recording the size of the batches, and blocking
+	 * until released when asked to.
+	 */
+	private static class FakeParser extends BiotechParser {
+		final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch entered = new CountDownLatch(1);
+		volatile CountDownLatch release = null;
+
+		FakeParser() {
+			super((GenericTagger) null);
+		}
+
+		@Override
+		public List<List<BiotechEntity>> extractBiotechEntities(List<String> texts) throws Exception {
+			entered.countDown();
+			if (release != null)
+				release.await(10, TimeUnit.SECONDS);
+			batchSizes.add(texts.size());
+			List<List<BiotechEntity>> results = new ArrayList<List<BiotechEntity>>();
+			for(String text : texts) {
+				List<BiotechEntity> entities = new ArrayList<BiotechEntity>();
+				int ind = text.indexOf("IL-2");
+				while (ind != -1) {
+					BiotechEntity entity = new BiotechEntity("<protein>");
+					entity.setOffsetStart(ind);
+					entity.setOffsetEnd(ind + 4);
+					entities.add(entity);
+					ind = text.indexOf("IL-2", ind + 4);
+				}
+				results.add(entities);
+			}
+			return results;
+		}
+	}
+
+	@Test
+	public void testBatchingAndLoadShedding() throws Exception {
+		FakeParser parser = new FakeParser();
+		parser.release = new CountDownLatch(1);
+		BiotechRequestBatcher batcher = new BiotechRequestBatcher(parser, 1, 8, 0, 4);
+		try {
+			// the first text blocks the only worker, the next ones wait in the queue
+			BiotechRequestBatcher.Request first = batcher.submit("IL-2 first");
+			assertTrue(parser.entered.await(10, TimeUnit.SECONDS));
+			List<BiotechRequestBatcher.Request> waiting = batcher.submit(Arrays.asList("a", "IL-2 b", "c"));
+			assertNotNull(waiting);
+			// not enough room for two more texts: none of them is admitted
+			assertNull(batcher.submit(Arrays.asList("d", "e")));
+			assertEquals(2, batcher.getNbRejected());
+			assertNotNull(batcher.submit("f"));
+			assertNull(batcher.submit("g"));
+
+			parser.release.countDown();
+			assertTrue(first.await(10000));
+			for(BiotechRequestBatcher.Request request : waiting) {
+				assertTrue(request.await(10000));
+			}
+			assertEquals(1, first.getEntities().size());
+			assertEquals(1, waiting.get(1).getEntities().size());
+			// the waiting texts are labelled together
+			assertEquals(4, waiting.get(0).getBatchSize());
+			assertEquals(Arrays.asList(1, 4), parser.batchSizes);
+			assertEquals(5, batcher.getNbAccepted());
+		} finally {
+			batcher.close();
+		}
+	}
+
+	@Test
+	public void testJson() throws Exception {
+		Object json = BiotechJson.parse(" {\"texts\": [\"a\\\"b\\u00e9\", \"c\"], \"n\": -1.5e2, \"ok\": true, \"x\": null} ");
+		Map<?, ?> object = (Map<?, ?>) json;
+		assertEquals(Arrays.asList("a\"bé", "c"), object.get("texts"));
+		assertEquals(-150.0, (Double) object.get("n"), 0.0);
+		assertEquals(Boolean.TRUE, object.get("ok"));
+		assertTrue(object.containsKey("x"));
+		try {
+			BiotechJson.parse("{\"text\": }");
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		// the nesting is limited, so that a deeply nested body does not overflow the stack
+		StringBuilder nested = new StringBuilder();
+		for(int i = 0; i < BiotechJson.MAX_DEPTH; i++)
+			nested.append("[");
+		nested.append("1");
+		for(int i = 0; i < BiotechJson.MAX_DEPTH; i++)
+			nested.append("]");
+		assertTrue(BiotechJson.parse(nested.toString()) instanceof List);
+		try {
+			BiotechJson.parse("{\"a\": " + nested + "}");
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("too deeply nested"));
+		}
+		char[] brackets = new char[800000];
+		Arrays.fill(brackets, '[');
+		try {
+			BiotechJson.parse(new String(brackets));
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("too deeply nested"));
+		}
+		StringBuilder res = new StringBuilder();
+		BiotechJson.appendString(res, "a\"\n\u0001");
+		assertEquals("\"a\\\"\\n\\u0001\"", res.toString());
+	}
+
+	private static String post(int port, String path, String contentType, String body, int expectedStatus,
+			Map<String, List<String>> headers) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", contentType);
+		OutputStream out = connection.getOutputStream();
+		out.write(body.getBytes("UTF-8"));
+		out.close();
+		assertEquals(expectedStatus, connection.getResponseCode());
+		if (headers != null) {
+			// header names in lower case, the server normalising their case
+			for(Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+				if (header.getKey() != null)
+					headers.put(header.getKey().toLowerCase(), header.getValue());
+			}
+		}
+		InputStream in = (expectedStatus == 200) ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) != -1)
+			response.write(buffer, 0, n);
+		in.close();
+		return new String(response.toByteArray(), "UTF-8");
+	}
+
+	@Test
+	public void testService() throws Exception {
+		FakeParser parser = new FakeParser();
+		BiotechRequestBatcher batcher = new BiotechRequestBatcher(parser, 2, 8, 1, 16);
+		BiotechHttpService service = new BiotechHttpService(new InetSocketAddress("localhost", 0), batcher, 4, 100, 10000);
+		service.start();
+		try {
+			int port = service.getPort();
+			Map<String, List<String>> headers = new HashMap<String, List<String>>();
+			assertEquals("{\"entities\":[{\"type\":\"protein\",\"start\":5,\"end\":9,\"text\":\"IL-2\"}]}",
+				post(port, "/api/processBioText", "text/plain", "anti IL-2", 200, headers));
+			assertTrue(headers.get("server-timing").get(0).startsWith("queue;dur="));
+			assertEquals("1", headers.get("x-batch-size").get(0));
+
+			assertEquals("{\"results\":[[],[{\"type\":\"protein\",\"start\":0,\"end\":4,\"text\":\"IL-2\"}]]}",
+				post(port, "/api/processBioText", "application/json", "{\"texts\": [\"none\", \"IL-2\"]}", 200, null));
+			assertEquals("0\tprotein\t0\t4\tIL-2\n",
+				post(port, "/api/processBioText?format=tsv", "application/x-www-form-urlencoded",
+					"text=IL-2%20gene", 200, null));
+
+			post(port, "/api/processBioText", "application/json", "{\"txt\": \"IL-2\"}", 400, null);
+			// malformed escapes in the query (already rejected by the HTTP server) and in a form body
+			post(port, "/api/processBioText?format=%zz", "text/plain", "IL-2", 400, null);
+			post(port, "/api/processBioText", "application/x-www-form-urlencoded", "text=IL-2%zz", 400, null);
+			StringBuilder longText = new StringBuilder();
+			for(int i = 0; i < 101; i++)
+				longText.append('a');
+			post(port, "/api/processBioText", "text/plain", longText.toString(), 413, null);
+		} finally {
+			service.close();
+			batcher.close();
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package org.grobid.core.test;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+
+import org.grobid.core.metrics.BiotechMetrics.Stage;
+import org.grobid.core.metrics.ExtractionTrace;
+import org.grobid.core.metrics.Histogram;
+import org.grobid.core.metrics.InMemoryBiotechMetrics;
+import org.grobid.core.metrics.JmxBiotechMetrics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBiotechMetrics {
+
+	@Test
+	public void testHistogram() throws Exception {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getQuantile(0.5));
+		for(long value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		histogram.record(0);
+		assertEquals(1001, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500500.0 / 1001, histogram.getMean(), 1e-9);
+
+		// quantiles are given with a factor 2 precision
+		long median = histogram.getQuantile(0.5);
+		assertTrue(median >= 500 && median < 1024);
+		assertEquals(1000, histogram.getQuantile(0.99));
+		assertEquals(0, histogram.getQuantile(0));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	@Test
+	public void testTrace() throws Exception {
+		InMemoryBiotechMetrics metrics = new InMemoryBiotechMetrics();
+		ExtractionTrace trace = ExtractionTrace.start(true);
+		trace.addText(20);
+		trace.mark(Stage.TOKENIZATION);
+		trace.addTokens(5);
+		metrics.recordSequence(5);
+		Thread.sleep(5);
+		trace.mark(Stage.LABELLING);
+		long nanos = trace.finish(metrics);
+
+		assertEquals(1, metrics.getExtractions());
+		assertEquals(1, metrics.getTexts());
+		assertEquals(20, metrics.getCharacters());
+		assertEquals(5, metrics.getTokens());
+		assertEquals(5, metrics.getMaxSequenceLength());
+		assertTrue(metrics.getStageHistogram(Stage.LABELLING).getMax() >= 5000000);
+		assertTrue(trace.getStageNanos(Stage.LABELLING) <= nanos);
+		assertEquals(1, metrics.getStageHistogram(Stage.FEATURES).getCount());
+		assertTrue(metrics.report().contains("extractions: 1, texts: 1, characters: 20, tokens: 5"));
+
+		metrics.reset();
+		assertEquals(0, metrics.getExtractions());
+	}
+
+	@Test
+	public void testJmx() throws Exception {
+		JmxBiotechMetrics metrics = new JmxBiotechMetrics("test");
+		try {
+			metrics.recordExtraction(2, 100, 30, 2000000, -1);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertTrue(server.isRegistered(metrics.getObjectName()));
+			assertEquals(2L, server.getAttribute(metrics.getObjectName(), "Texts"));
+			assertEquals(30L, server.getAttribute(metrics.getObjectName(), "Tokens"));
+		} finally {
+			metrics.unregister();
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(metrics.getObjectName()));
+	}
+
+}
@@ -0,0 +1,168 @@
+package org.grobid.core.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.grobid.core.analyzers.BioTokenizer;
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.data.BiotechEntitySpans;
+import org.grobid.core.engines.BiotechExtractionService;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.engines.BiotechPipelineExecutor;
+import org.grobid.core.engines.tagging.GenericTagger;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.metrics.BiotechMetrics.Stage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBiotechPipelineExecutor {
+
+	/**
+	 * Parser with simple features and a tagger labelling the tokens starting with IL as
+	 * proteins, with random delays so that the documents are not completed in order.
+	 */
+	private static class FakeParser extends BiotechParser {
+		private final Random random = new Random(42);
+
+		FakeParser() {
+			super((GenericTagger) null);
+		}
+
+		@Override
+		public Featurized featurize(String text) {
+			if ( (text != null) && text.equals("fail") )
+				throw new IllegalStateException("featurize failed");
+			if ( (text == null) || (text.length() == 0) )
+				return null;
+			BioTokenizer.Tokens tokens = BioTokenizer.tokenize(text);
+			StringBuilder features = new StringBuilder();
+			int nbTokens = 0;
+			for (int i = 0; i < tokens.size(); i++) {
+				if (!tokens.isSpace(i)) {
+					features.append(tokens.text(i)).append("\n");
+					nbTokens++;
+				}
+			}
+			if (nbTokens == 0)
+				return new Featurized(text, tokens, null, 0);
+			return new Featurized(text, tokens, features.append("\n").toString(), nbTokens);
+		}
+
+		@Override
+		public String label(String data) {
+			int delay;
+			synchronized (random) {
+				delay = random.nextInt(3);
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			StringBuilder result = new StringBuilder();
+			for (String line : data.split("\n")) {
+				if (line.length() > 0)
+					result.append(line).append("\t").append(line.startsWith("IL") ? "B-<protein>" : "O").append("\n");
+			}
+			return result.toString();
+		}
+	}
+
+	private static List<String> documents(int nb) {
+		List<String> documents = new ArrayList<String>();
+		for (int i = 0; i < nb; i++) {
+			StringBuilder document = new StringBuilder("document ").append(i);
+			for (int j = 0; j < i % 5; j++)
+				document.append(" with IL").append(j);
+			documents.add(document.toString());
+		}
+		return documents;
+	}
+
+	@Test
+	public void testOrderedResults() throws Exception {
+		FakeParser parser = new FakeParser();
+		List<String> documents = documents(200);
+		documents.set(10, null);
+		documents.set(11, " ");
+		BiotechPipelineExecutor executor = new BiotechPipelineExecutor(parser, 2, 3, 2, 4);
+		try {
+			final List<String> results = new ArrayList<String>();
+			final List<Integer> indices = new ArrayList<Integer>();
+			executor.extractSpans(documents.iterator(), new BiotechExtractionService.SpansHandler() {
+				public void onResult(int index, String document, BiotechEntitySpans spans) {
+					indices.add(index);
+					results.add((spans == null) ? null : spans.toString());
+				}
+			});
+			assertEquals(documents.size(), results.size());
+			for (int i = 0; i < documents.size(); i++) {
+				assertEquals(i, indices.get(i).intValue());
+				String document = documents.get(i);
+				BiotechParser.Featurized featurized = parser.featurize(document);
+				String expected = (featurized == null) ? null : BiotechParser.decode(featurized,
+					(featurized.getFeatures() == null) ? null : parser.label(featurized.getFeatures())).toString();
+				assertEquals(expected, results.get(i));
+			}
+			assertNull(results.get(10));
+			assertEquals("", results.get(11));
+			assertEquals("<protein>\t16\t19\n<protein>\t25\t28\n", results.get(2));
+			assertTrue(executor.getBusyNanos(Stage.LABELLING) > 0);
+
+			List<List<BiotechEntity>> entities = executor.extract(Arrays.asList("IL2 and IL4", "none"));
+			assertEquals(2, entities.get(0).size());
+			assertEquals(0, entities.get(1).size());
+		} finally {
+			executor.close();
+		}
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		BiotechPipelineExecutor executor = new BiotechPipelineExecutor(new FakeParser(), 1, 1, 1, 2);
+		try {
+			final List<Integer> indices = new ArrayList<Integer>();
+			try {
+				executor.extractSpans(Arrays.asList("IL2", "fail", "IL4").iterator(),
+					new BiotechExtractionService.SpansHandler() {
+						public void onResult(int index, String document, BiotechEntitySpans spans) {
+							indices.add(index);
+						}
+					});
+				fail("the failure of a document must be reported");
+			} catch (GrobidException e) {
+				// expected
+			}
+			assertEquals(Arrays.asList(0), indices);
+			// the executor is still usable
+			assertEquals(1, executor.extract(Arrays.asList("IL2")).get(0).size());
+
+			// with an error handler, the failed document is reported in order and the others are extracted
+			final List<String> delivered = new ArrayList<String>();
+			executor.extractSpans(Arrays.asList("IL2", "fail", "IL4").iterator(),
+				new BiotechExtractionService.SpansHandler() {
+					public void onResult(int index, String document, BiotechEntitySpans spans) {
+						delivered.add(index + " " + spans.size());
+					}
+				},
+				new BiotechExtractionService.ErrorHandler() {
+					public void onError(int index, String document, Exception error) {
+						delivered.add(index + " " + error.getMessage());
+					}
+				});
+			assertEquals(Arrays.asList("0 1", "1 featurize failed", "2 1"), delivered);
+		} finally {
+			executor.close();
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package org.grobid.core.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.layout.LayoutToken;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBiotechResultExtraction {
+
+	private static List<LayoutToken> tokenize(String... tokens) {
+		List<LayoutToken> tokenizations = new ArrayList<LayoutToken>();
+		for(String token : tokens) {
+			LayoutToken layoutToken = new LayoutToken();
+			layoutToken.setText(token);
+			tokenizations.add(layoutToken);
+		}
+		return tokenizations;
+	}
+
+	private static String toString(List<BiotechEntity> entities) {
+		StringBuilder res = new StringBuilder();
+		for(BiotechEntity entity : entities) {
+			res.append(entity.getRawName()).append(" ")
+				.append(entity.getOffsetStart()).append(" ").append(entity.getOffsetEnd()).append("\n");
+		}
+		return res.toString();
+	}
+
+	@Test
+	public void testEntities() throws Exception {
+		// "IL-2 gene of IL-2 , IL-2"
+		List<LayoutToken> tokenizations = 
+			tokenize("IL-2", " ", "gene", " ", "of", " ", "IL-2", " ", ",", " ", "IL-2");
+		String result = 
+			"IL-2\tx\ty\tB-<DNA>\n" +
+			"gene\tx\ty\tI-<DNA>\n" +
+			"of\tx\ty\tO\n" +
+			"IL-2\tx\ty\tB-<protein>\n" + 
+			",\tx\ty\tI-<protein>\n" +
+			"IL-2\tx\ty\tB-<protein>\n";
+		List<BiotechEntity> entities = BiotechParser.resultExtraction(result, 0, result.length(), tokenizations);
+		// a B- of the same type following the entity continues it 
+		assertEquals("<dna> 0 9\n<protein> 13 24\n", toString(entities));
+		assertSame(entities.get(0).getRawName(), BiotechParser.resultExtraction(result, 0, result.length(), 
+			tokenizations).get(0).getRawName());
+	}
+
+	@Test
+	public void testInsideWithoutBegin() throws Exception {
+		List<LayoutToken> tokenizations = tokenize("the", " ", "T", " ", "cells");
+		String result = "the O\nT I-<cell_type>\ncells I-<cell_type>\n";
+		assertEquals("<cell_type> 4 11\n", 
+			toString(BiotechParser.resultExtraction(result, 0, result.length(), tokenizations)));
+	}
+
+	@Test
+	public void testRange() throws Exception {
+		List<LayoutToken> tokenizations = tokenize("p50", " ", "binds");
+		String result = "x\tB-<protein>\n\np50\tB-<protein>\nbinds\tO\n\nx\tO\n";
+		int start = result.indexOf("p50");
+		int end = result.indexOf("\n\nx") + 1;
+		assertEquals("<protein> 0 3\n", 
+			toString(BiotechParser.resultExtraction(result, start, end, tokenizations)));
+	}
+
+}
@@ -0,0 +1,220 @@
+package org.grobid.core.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.grobid.core.engines.BiotechParser;
+import org.grobid.core.engines.BiotechTaggerPool;
+import org.grobid.core.engines.tagging.GenericTagger;
+import org.grobid.core.exceptions.GrobidException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBiotechTaggerPool {
+
+	/**
+	 * Tagger giving back its input, failing on "fail", and checking that it is never used
+	 * by two threads at the same time.
+	 */
+	private static class EchoTagger implements GenericTagger {
+		private final AtomicInteger users = new AtomicInteger(0);
+		volatile boolean closed = false;
+		volatile boolean concurrentUse = false;
+
+		public String label(Iterable<String> data) {
+			StringBuilder res = new StringBuilder();
+			for(String line : data)
+				res.append(line).append("\n");
+			return label(res.toString());
+		}
+
+		public String label(String data) {
+			if (users.incrementAndGet() > 1)
+				concurrentUse = true;
+			try {
+				if (data.equals("fail"))
+					throw new GrobidException("labelling failure");
+				Thread.yield();
+				return data;
+			} finally {
+				users.decrementAndGet();
+			}
+		}
+
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private static class EchoTaggerCreator implements BiotechTaggerPool.TaggerCreator {
+		final List<EchoTagger> created = Collections.synchronizedList(new ArrayList<EchoTagger>());
+
+		public GenericTagger createTagger() {
+			EchoTagger tagger = new EchoTagger();
+			created.add(tagger);
+			return tagger;
+		}
+	}
+
+	@Test
+	public void testBorrowAndRelease() throws Exception {
+		EchoTaggerCreator creator = new EchoTaggerCreator();
+		BiotechTaggerPool pool = new BiotechTaggerPool(2, 1000, creator);
+		pool.warmUp(4);
+		assertEquals(2, pool.getNbCreated());
+		assertEquals(2, pool.getNumIdle());
+
+		GenericTagger tagger = pool.borrow();
+		assertEquals(1, pool.getNumActive());
+		pool.release(tagger);
+		// the instances are reused
+		assertSame(tagger, pool.borrow());
+		assertEquals(2, pool.getNbCreated());
+		assertEquals(2, pool.getNbBorrows());
+
+		// an invalidated instance is closed and replaced
+		pool.invalidate(tagger);
+		assertTrue(((EchoTagger) tagger).closed);
+		GenericTagger first = pool.borrow();
+		GenericTagger second = pool.borrow();
+		assertEquals(3, pool.getNbCreated());
+		pool.release(first);
+		pool.release(second);
+
+		pool.close();
+		for(EchoTagger created : creator.created) {
+			assertTrue(created.closed);
+		}
+	}
+
+	@Test
+	public void testBorrowTimeout() throws Exception {
+		BiotechTaggerPool pool = new BiotechTaggerPool(1, 50, new EchoTaggerCreator());
+		GenericTagger tagger = pool.borrow();
+		try {
+			pool.borrow();
+			fail("no tagger should be available");
+		} catch (GrobidException e) {
+			// expected
+		}
+		assertEquals(1, pool.getNbTimeouts());
+		assertEquals(2, pool.getNbBorrows());
+		assertTrue(pool.getMaxBorrowWaitMillis() >= 40);
+
+		pool.release(tagger);
+		pool.release(pool.borrow());
+		assertEquals(1, pool.getNbTimeouts());
+		pool.close();
+	}
+
+	@Test
+	public void testConcurrentParsers() throws Exception {
+		EchoTaggerCreator creator = new EchoTaggerCreator();
+		final BiotechTaggerPool pool = new BiotechTaggerPool(3, 10000, creator);
+		final BiotechParser parser = new BiotechParser(pool);
+		int nbThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for(int t = 0; t < nbThreads; t++) {
+				final String data = "data " + t;
+				futures.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						for(int i = 0; i < 200; i++) {
+							if (!parser.label(data).equals(data))
+								return false;
+						}
+						return true;
+					}
+				}));
+			}
+			for(Future<Boolean> future : futures) {
+				assertTrue(future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertTrue(pool.getNbCreated() <= 3);
+		assertEquals(8 * 200, pool.getNbBorrows());
+		assertEquals(0, pool.getNumActive());
+		Set<EchoTagger> distinct = Collections.newSetFromMap(new IdentityHashMap<EchoTagger, Boolean>());
+		for(EchoTagger tagger : creator.created) {
+			assertTrue(!tagger.concurrentUse);
+			distinct.add(tagger);
+		}
+		assertEquals(pool.getNbCreated(), distinct.size());
+
+		// a tagger failing to label is not reused
+		try {
+			parser.label("fail");
+			fail("the labelling should fail");
+		} catch (GrobidException e) {
+			// expected
+		}
+		assertEquals(0, pool.getNumActive());
+		int nbClosed = 0;
+		for(EchoTagger tagger : creator.created) {
+			if (tagger.closed)
+				nbClosed++;
+		}
+		assertEquals(1, nbClosed);
+		pool.close();
+	}
+
+	@Test
+	public void testSharedModel() throws Exception {
+		final List<EchoTagger> models = Collections.synchronizedList(new ArrayList<EchoTagger>());
+		BiotechTaggerPool.SharedModelTaggerCreator creator = new BiotechTaggerPool.SharedModelTaggerCreator(
+			new BiotechTaggerPool.ModelLoader() {
+				public GenericTagger loadModel() {
+					EchoTagger model = new EchoTagger();
+					models.add(model);
+					return model;
+				}
+			});
+		BiotechTaggerPool pool = new BiotechTaggerPool(4, 1000, creator);
+		pool.warmUp(4);
+		assertEquals(4, pool.getNbCreated());
+
+		// the model is loaded once for all the instances of the pool
+		List<GenericTagger> taggers = new ArrayList<GenericTagger>();
+		for(int i = 0; i < 4; i++) {
+			taggers.add(pool.borrow());
+		}
+		assertEquals(1, models.size());
+		for(GenericTagger tagger : taggers) {
+			assertEquals("data", tagger.label("data"));
+		}
+
+		// an invalidated instance is replaced without loading the model again
+		pool.invalidate(taggers.get(0));
+		assertTrue(!models.get(0).closed);
+		pool.release(pool.borrow());
+		assertEquals(5, pool.getNbCreated());
+		assertEquals(1, models.size());
+		for(int i = 1; i < 4; i++) {
+			pool.release(taggers.get(i));
+		}
+
+		// the shared model is closed with the pool
+		pool.close();
+		assertTrue(models.get(0).closed);
+	}
+
+}
@@ -0,0 +1,171 @@
+package org.grobid.core.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.grobid.core.data.BiotechEntity;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.main.batch.BulkDocumentReader;
+import org.grobid.core.main.batch.BulkDocumentReader.BulkDocument;
+import org.grobid.core.main.batch.BulkDocumentReader.Format;
+import org.grobid.core.main.batch.BulkResultWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestBulkExtraction {
+
+	private static File write(String suffix, boolean gzip, String content) throws IOException {
+		File file = File.createTempFile("bulk", suffix);
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		if (gzip)
+			out = new GZIPOutputStream(out);
+		Writer writer = new OutputStreamWriter(out, "UTF-8");
+		writer.write(content);
+		writer.close();
+		return file;
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		if (file.getName().endsWith(".gz"))
+			in = new GZIPInputStream(in);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = reader.readLine()) != null)
+			lines.add(line);
+		reader.close();
+		return lines;
+	}
+
+	@Test
+	public void testReader() throws Exception {
+		File file = write(".jsonl.gz", true,
+			"{\"id\": 12, \"text\": \"IL-2 gene\"}\n\n{\"text\": \"T cells\"}\nnot json\n{\"id\": \"a\"}\n");
+		assertEquals(Format.JSONL, Format.fromFileName(file.getName()));
+		BulkDocumentReader reader = new BulkDocumentReader(file, Format.JSONL, "text", "id");
+		BulkDocument document = reader.next();
+		assertEquals("12", document.getId());
+		assertEquals("IL-2 gene", document.getText());
+		document = reader.next();
+		assertEquals(1, document.getNumber());
+		assertEquals(3, document.getLine());
+		assertNull(document.getId());
+		document = reader.next();
+		assertNull(document.getText());
+		assertEquals(2, document.getNumber());
+		document = reader.next();
+		assertEquals("a", document.getId());
+		assertEquals("no \"text\" string field", document.getError());
+		assertNull(reader.next());
+		reader.close();
+
+		file = write(".tsv", false, "d1\tIL-2 gene\n\nd2\tT cells\nd3\tNF-kappa B\n");
+		reader = new BulkDocumentReader(file, Format.fromFileName(file.getName()), "text", "id");
+		assertEquals(2, reader.skip(2));
+		document = reader.next();
+		assertEquals("d3", document.getId());
+		assertEquals("NF-kappa B", document.getText());
+		assertEquals(4, document.getLine());
+		reader.close();
+	}
+
+	private static List<BiotechEntity> protein(int start, int end) {
+		BiotechEntity entity = new BiotechEntity("<protein>");
+		entity.setOffsetStart(start);
+		entity.setOffsetEnd(end);
+		return Collections.singletonList(entity);
+	}
+
+	private void testResume(String suffix) throws Exception {
+		File input = write(".txt", false, "IL-2 gene\nT cells\nIL-4\nIL-5 cells\n");
+		File output = File.createTempFile("bulk-out", suffix);
+		output.deleteOnExit();
+		new File(output.getPath() + ".checkpoint").deleteOnExit();
+
+		BulkDocumentReader reader = new BulkDocumentReader(input, Format.TXT, "text", "id");
+		BulkResultWriter writer = new BulkResultWriter(output, input.getPath(), false);
+		writer.write(reader.next(), protein(0, 4));
+		writer.write(reader.next(), new ArrayList<BiotechEntity>());
+		writer.checkpoint();
+		// written after the checkpoint, then interrupted
+		writer.write(reader.next(), Collections.<BiotechEntity>emptyList());
+		writer.checkpoint();
+		writer.write(reader.next(), Collections.<BiotechEntity>emptyList());
+		reader.close();
+
+		reader = new BulkDocumentReader(input, Format.TXT, "text", "id");
+		writer = new BulkResultWriter(output, input.getPath(), true);
+		assertEquals(3, writer.getNbDocuments());
+		reader.skip(writer.getNbDocuments());
+		writer.write(reader.next(), protein(0, 4));
+		assertNull(reader.next());
+		writer.close();
+		reader.close();
+
+		assertEquals(Arrays.asList(
+			"{\"line\":1,\"entities\":[{\"type\":\"protein\",\"start\":0,\"end\":4,\"text\":\"IL-2\"}]}",
+			"{\"line\":2,\"entities\":[]}",
+			"{\"line\":3,\"entities\":[]}",
+			"{\"line\":4,\"entities\":[{\"type\":\"protein\",\"start\":0,\"end\":4,\"text\":\"IL-5\"}]}"),
+			readLines(output));
+
+		try {
+			new BulkResultWriter(output, "other input", true);
+			fail("a checkpoint of another input must not be resumed");
+		} catch (GrobidException e) {
+			// expected
+		}
+
+		// a new run over the same output, interrupted before its first checkpoint
+		reader = new BulkDocumentReader(input, Format.TXT, "text", "id");
+		writer = new BulkResultWriter(output, input.getPath(), false);
+		writer.write(reader.next(), protein(0, 4));
+		writer.write(reader.next(), Collections.<BiotechEntity>emptyList());
+		reader.close();
+
+		// the checkpoint of the previous run is not resumed
+		reader = new BulkDocumentReader(input, Format.TXT, "text", "id");
+		writer = new BulkResultWriter(output, input.getPath(), true);
+		assertEquals(0, writer.getNbDocuments());
+		reader.skip(writer.getNbDocuments());
+		writer.write(reader.next(), protein(0, 4));
+		writer.close();
+		reader.close();
+		assertEquals(Arrays.asList(
+			"{\"line\":1,\"entities\":[{\"type\":\"protein\",\"start\":0,\"end\":4,\"text\":\"IL-2\"}]}"),
+			readLines(output));
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		testResume(".jsonl");
+	}
+
+	@Test
+	public void testResumeGzip() throws Exception {
+		testResume(".jsonl.gz");
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.grobid.core.test;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.grobid.core.analyzers.GrobidAnalyzer;
+import org.grobid.core.features.FeaturesVectorBiotechEntity;
+import org.grobid.core.features.FeaturesWriterBiotechEntity;
+import org.grobid.core.features.TokenFeaturesCache;
+import org.grobid.core.layout.LayoutToken;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  The streaming feature writer must produce exactly the same feature lines as the
+ *  feature vectors.
+ *
+ *  @author Patrice Lopez
+ */
+public class TestFeaturesWriterBiotechEntity extends EngineTest {
+
+	@Test
+	public void testSameFeaturesAsFeaturesVector() throws Exception {
+		String text = FileUtils.readFileToString(new File("./src/test/resources/PubMedAbstract.txt"), "UTF-8");
+		text = text.replace("\n", " ");
+		List<LayoutToken> tokens = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+
+		StringBuilder expected = new StringBuilder();
+		FeaturesWriterBiotechEntity writer = new FeaturesWriterBiotechEntity();
+		int posit = 0;
+		for(LayoutToken token : tokens) {
+			String tok = token.getText();
+			if (tok.trim().length() == 0)
+				continue;
+			String label = (posit % 2 == 0) ? "<biotech>" : null;
+			String line = (label == null) ? tok : tok + "\t" + label;
+			expected.append(FeaturesVectorBiotechEntity
+				.addFeaturesBiotechEntities(line, tokens.size(), posit, false, false).printVector());
+			writer.addToken(tok, label);
+			posit++;
+		}
+
+		assertEquals(expected.toString(), writer.getBuffer().toString());
+	}
+
+	@Test
+	public void testTokenFeaturesCache() throws Exception {
+		String text = FileUtils.readFileToString(new File("./src/test/resources/PubMedAbstract.txt"), "UTF-8");
+		text = text.replace("\n", " ");
+		List<LayoutToken> tokens = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(text);
+
+		FeaturesWriterBiotechEntity writer = new FeaturesWriterBiotechEntity(new StringBuilder(), null);
+		TokenFeaturesCache tokenCache = new TokenFeaturesCache(100);
+		FeaturesWriterBiotechEntity cachedWriter = new FeaturesWriterBiotechEntity(new StringBuilder(), tokenCache);
+		// second pass with all the tokens of the text in the cache
+		for(int pass=0; pass<2; pass++) {
+			writer.reset();
+			cachedWriter.reset();
+			for(LayoutToken token : tokens) {
+				String tok = token.getText();
+				if (tok.trim().length() == 0)
+					continue;
+				writer.addToken(tok, (pass == 0) ? "<biotech>" : null);
+				cachedWriter.addToken(tok, (pass == 0) ? "<biotech>" : null);
+			}
+			assertEquals(writer.getBuffer().toString(), cachedWriter.getBuffer().toString());
+		}
+		assertTrue(tokenCache.getStats().hitCount() > 0);
+	}
+
+}
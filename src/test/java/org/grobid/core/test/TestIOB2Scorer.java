@@ -0,0 +1,75 @@
+package org.grobid.core.test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.grobid.trainer.IOB2Scorer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *  @author Patrice Lopez
+ */
+public class TestIOB2Scorer {
+
+	@Test
+	public void testCounts() throws Exception {
+		IOB2Scorer scorer = new IOB2Scorer();
+		scorer.addSentence(Arrays.asList("B-protein", "I-protein", "O", "B-DNA"),
+			Arrays.asList("B-protein", "I-protein", "O", "B-protein"));
+
+		assertEquals(4, scorer.getNbTags());
+		assertEquals(3, scorer.getNbCorrectTags());
+		assertEquals(4, scorer.getNbCorrectIOBs());
+
+		IOB2Scorer.Counts total = scorer.getTotal();
+		assertEquals(2, total.getNbObjects());
+		assertEquals(2, total.getNbAnswers());
+		assertEquals(1, total.getNbCorrect());
+		assertEquals(1, total.getNbCorrectLeft());
+		assertEquals(1, total.getNbCorrectRight());
+		assertEquals(2, total.getNbCorrectWithoutClass());
+
+		// per class counts are attributed to the class of the answer
+		assertEquals(1, scorer.getClassCounts().get("protein").getNbObjects());
+		assertEquals(2, scorer.getClassCounts().get("protein").getNbAnswers());
+		assertEquals(1, scorer.getClassCounts().get("DNA").getNbObjects());
+		assertEquals(0, scorer.getClassCounts().get("DNA").getNbAnswers());
+	}
+
+	@Test
+	public void testBoundaries() throws Exception {
+		IOB2Scorer scorer = new IOB2Scorer();
+		// answer too long on the right, then too short on the left
+		scorer.addSentence(Arrays.asList("B-protein", "O", "O", "B-protein", "I-protein"),
+			Arrays.asList("B-protein", "I-protein", "O", "O", "B-protein"));
+
+		IOB2Scorer.Counts total = scorer.getTotal();
+		assertEquals(2, total.getNbObjects());
+		assertEquals(2, total.getNbAnswers());
+		assertEquals(0, total.getNbCorrect());
+		assertEquals(1, total.getNbCorrectLeft());
+		assertEquals(1, total.getNbCorrectRight());
+	}
+
+	@Test
+	public void testReport() throws Exception {
+		String reference = "###MEDLINE:1\n\nIL-2\tB-protein\ngene\tI-protein\nof\tO\nmice\tB-DNA\n\n"
+			+ "T\tB-cell_type\ncells\tI-cell_type\n";
+		String answer = "IL-2\tB-protein\ngene\tI-protein\nof\tO\nmice\tB-protein\n\n"
+			+ "T\tO\ncells\tB-cell_type\n\n";
+		IOB2Scorer scorer = new IOB2Scorer();
+		scorer.addSentences(new StringReader(reference), new StringReader(answer));
+
+		assertEquals(6, scorer.getNbTags());
+		String report = scorer.report();
+		assertTrue(report.contains("# of tags: 6,\t correct tags: 3,\t correct IOBs: 4\n"));
+		assertTrue(report.contains("# of OBJECTs: 3,\t ANSWERs: 3.\n"));
+		assertTrue(report.contains("     FULLY CORRECT answer with class info: 1 (0.3333 / 0.3333 / 0.3333),\n"));
+		assertTrue(report.contains("   correct RIGHT boundary with class info: 2 (0.6667 / 0.6667 / 0.6667),\n"));
+		assertTrue(report.contains("\n[<cell_type> Identification Performance]\n"));
+	}
+
+}